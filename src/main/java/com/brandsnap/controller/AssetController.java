@@ -1,13 +1,35 @@
 package com.brandsnap.controller;
 
+import com.brandsnap.generation.GenerationFailedException;
+import com.brandsnap.generation.GenerationJob;
+import com.brandsnap.generation.GenerationJobService;
+import com.brandsnap.generation.GenerationRejectedException;
+import com.brandsnap.generation.IdempotencyKeyReuseException;
+import com.brandsnap.generation.InputImage;
+import com.brandsnap.generation.InputImageUploads;
 import com.brandsnap.model.Asset;
+import com.brandsnap.payload.response.AssetPage;
 import com.brandsnap.service.AssetService;
+import com.brandsnap.service.ReferenceImageService;
+import com.brandsnap.storage.AssetContentWriter;
+import com.brandsnap.storage.ImageVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/assets")
@@ -16,24 +38,231 @@ public class AssetController {
     @Autowired
     private AssetService assetService;
 
-    @PostMapping
-    public ResponseEntity<Asset> generateAsset(@RequestBody Map<String, String> request) {
+    @Autowired
+    private AssetContentWriter assetContentWriter;
+
+    @Autowired
+    private GenerationJobService generationJobService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private InputImageUploads inputImageUploads;
+
+    @Autowired
+    private ReferenceImageService referenceImageService;
+
+    @Value("${brandsnap.images.immutable-cache-control}")
+    private String immutableCacheControl;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> generateAsset(@RequestBody Map<String, String> request,
+            @RequestParam(defaultValue = "false") boolean async,
+            @RequestParam(defaultValue = "false") boolean fresh,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Principal principal) {
         Long campaignId = Long.parseLong(request.get("campaignId"));
         String prompt = request.get("prompt");
         String inputImage = request.get("inputImage"); // Optional
+        String referenceImageId = request.get("referenceImageId"); // Optional, instead of inputImage
+
+        boolean hasInputImage = inputImage != null && !inputImage.isEmpty();
+        if (referenceImageId != null && !referenceImageId.isEmpty()) {
+            if (hasInputImage) {
+                return bothInputImages();
+            }
+            InputImage image = referenceImageService.inputFor(campaignId, Long.parseLong(referenceImageId));
+            return generate(campaignId, prompt, image, async, fresh, idempotencyKey, principal);
+        }
+        InputImage image = hasInputImage ? InputImage.ofBase64(inputImage) : null;
+        return generate(campaignId, prompt, image, async, fresh, idempotencyKey, principal);
+    }
+
+    /**
+     * Multipart variant: the input image arrives as a raw file part instead
+     * of base64 inside JSON. Large uploads are spooled to disk and streamed
+     * into the provider request, so heap use stays flat.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> generateAssetMultipart(@RequestParam Long campaignId,
+            @RequestParam String prompt,
+            @RequestPart(name = "inputImage", required = false) MultipartFile inputImage,
+            @RequestParam(required = false) Long referenceImageId,
+            @RequestParam(defaultValue = "false") boolean async,
+            @RequestParam(defaultValue = "false") boolean fresh,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Principal principal) throws IOException {
+        boolean hasInputImage = inputImage != null && !inputImage.isEmpty();
+        if (referenceImageId != null) {
+            if (hasInputImage) {
+                return bothInputImages();
+            }
+            InputImage image = referenceImageService.inputFor(campaignId, referenceImageId);
+            return generate(campaignId, prompt, image, async, fresh, idempotencyKey, principal);
+        }
+        InputImage image = null;
+        if (hasInputImage) {
+            try {
+                image = inputImageUploads.spool(inputImage);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+            }
+        }
+        return generate(campaignId, prompt, image, async, fresh, idempotencyKey, principal);
+    }
+
+    private static ResponseEntity<?> bothInputImages() {
+        return ResponseEntity.badRequest()
+                .body(Map.of("message", "Send either inputImage or referenceImageId, not both"));
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<?> uploadTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(413).body(Map.of("message", "Uploaded image is too large"));
+    }
 
-        return ResponseEntity.ok(assetService.generateAsset(campaignId, prompt, inputImage));
+    private ResponseEntity<?> generate(Long campaignId, String prompt, InputImage image, boolean async,
+            boolean fresh, String idempotencyKey, Principal principal) {
+        // Keys are only unique per client, so scope them to the caller
+        String scopedKey = idempotencyKey != null && principal != null
+                ? principal.getName() + ":" + idempotencyKey
+                : null;
+
+        if (async) {
+            try {
+                // The job releases the image when it is done
+                GenerationJob job = generationJobService.submit(campaignId, prompt, image, fresh, scopedKey);
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/assets/jobs/" + job.getId()))
+                        .body(job);
+            } catch (GenerationRejectedException e) {
+                release(image);
+                return serviceUnavailable(e);
+            }
+        }
+
+        try {
+            return ResponseEntity.ok(assetService.generateAsset(campaignId, prompt, image, fresh, scopedKey));
+        } catch (IdempotencyKeyReuseException e) {
+            return ResponseEntity.status(422).body(Map.of("message", e.getMessage()));
+        } catch (GenerationRejectedException e) {
+            return serviceUnavailable(e);
+        } catch (GenerationFailedException e) {
+            return ResponseEntity.status(502).body(Map.of("message", e.getMessage()));
+        } finally {
+            release(image);
+        }
+    }
+
+    private static void release(InputImage image) {
+        if (image != null) {
+            image.release();
+        }
+    }
+
+    private ResponseEntity<?> serviceUnavailable(GenerationRejectedException e) {
+        long retryAfter = e.getRetryAfterSeconds() > 0 ? e.getRetryAfterSeconds() : 1;
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<GenerationJob> getJob(@PathVariable String jobId) {
+        return generationJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(path = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToJob(@PathVariable String jobId) {
+        return generationJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(generationJobService.subscribe(job)))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping
-    public ResponseEntity<List<Asset>> getAssets(@RequestParam Long campaignId) {
-        return ResponseEntity.ok(assetService.getAssetsByCampaign(campaignId));
+    public ResponseEntity<AssetPage> getAssets(@RequestParam Long campaignId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(assetService.getAssetPage(campaignId, cursor, limit));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Asset> getAsset(@PathVariable Long id) {
+        return ResponseEntity.ok(assetService.getAssetById(id));
+    }
+
+    @GetMapping("/{id}/image")
+    public void getAssetImage(@PathVariable Long id,
+            @RequestParam(required = false) Integer w,
+            @RequestParam(required = false) Integer h,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Asset asset = assetService.getAssetById(id);
+        if (asset.getStorageKey() == null) {
+            // Legacy row not yet moved out of the database
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // The image behind an asset id changes on update, so always revalidate
+        writeImage(asset.getStorageKey(), asset.getMimeType(), w, h, format, "no-cache", request, response);
+    }
+
+    @GetMapping("/content/{key}")
+    public void getContent(@PathVariable String key,
+            @RequestParam(required = false) Integer w,
+            @RequestParam(required = false) Integer h,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<String> mimeType = assetService.findMimeTypeByStorageKey(key);
+        if (mimeType.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // Content-addressed: the bytes behind this URL can never change
+        writeImage(key, mimeType.get(), w, h, format, immutableCacheControl, request, response);
+    }
+
+    private void writeImage(String storageKey, String mimeType, Integer w, Integer h, String format,
+            String cacheControl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (w == null && h == null && format == null) {
+            assetContentWriter.write(storageKey, mimeType, cacheControl, request, response);
+            return;
+        }
+
+        ImageVariantService.Format variantFormat;
+        try {
+            variantFormat = format != null ? ImageVariantService.Format.parse(format)
+                    : "image/png".equals(mimeType) ? ImageVariantService.Format.PNG
+                            : ImageVariantService.Format.JPEG;
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        ImageVariantService.Variant variant;
+        try {
+            variant = imageVariantService.getVariant(storageKey, w, h, variantFormat);
+        } catch (ImageVariantService.SourceTooLargeException e) {
+            assetContentWriter.write(storageKey, mimeType, cacheControl, request, response);
+            return;
+        }
+        assetContentWriter.writeFile(variant.path(), variant.etag(), variant.format().mimeType(), cacheControl,
+                request, response);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Asset> updateAsset(@PathVariable Long id, @RequestBody Map<String, String> request) {
+    public ResponseEntity<?> updateAsset(@PathVariable Long id, @RequestBody Map<String, String> request,
+            @RequestParam(defaultValue = "false") boolean fresh) {
         String prompt = request.get("prompt");
-        return ResponseEntity.ok(assetService.updateAsset(id, prompt));
+        try {
+            return ResponseEntity.ok(assetService.updateAsset(id, prompt, fresh));
+        } catch (GenerationRejectedException e) {
+            return serviceUnavailable(e);
+        } catch (GenerationFailedException e) {
+            return ResponseEntity.status(502).body(Map.of("message", e.getMessage()));
+        }
     }
 
     @DeleteMapping("/{id}")
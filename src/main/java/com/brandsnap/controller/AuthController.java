@@ -2,7 +2,14 @@ package com.brandsnap.controller;
 
 import com.brandsnap.model.User;
 import com.brandsnap.payload.response.JwtResponse;
+import com.brandsnap.security.CustomUserDetailsService;
+import com.brandsnap.security.GoogleIdTokenVerifier;
 import com.brandsnap.security.JwtUtils;
+import com.brandsnap.security.PasswordHashingRejectedException;
+import com.brandsnap.security.RefreshTokenService;
+import com.brandsnap.security.TokenRevocationService;
+import com.brandsnap.security.TokenVersionService;
+import com.brandsnap.security.UserPrincipal;
 import com.brandsnap.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -31,11 +38,28 @@ public class AuthController {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private GoogleIdTokenVerifier googleIdTokenVerifier;
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody User user) {
         try {
             User newUser = userService.registerUser(user);
             return ResponseEntity.ok(newUser);
+        } catch (PasswordHashingRejectedException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         }
@@ -51,21 +75,26 @@ public class AuthController {
                     new UsernamePasswordAuthenticationToken(username, password));
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
-            String jwt = jwtUtils.generateJwtToken(authentication);
 
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
             List<String> roles = userDetails.getAuthorities().stream()
                     .map(item -> item.getAuthority())
                     .collect(Collectors.toList());
 
-            // Get user from database - authentication already succeeded above
-            User user = userService.findByUsername(username).orElseThrow();
+            // Get user from database - authentication already succeeded above.
+            // The principal holds the canonical username even for email logins
+            User user = userService.findByUsername(userDetails.getUsername()).orElseThrow();
+            String jwt = jwtUtils.generateToken(user, roles);
+            String refreshToken = refreshTokenService.issue(user.getId());
 
             return ResponseEntity.ok(new JwtResponse(jwt,
+                    refreshToken,
                     user.getId(),
                     userDetails.getUsername(),
                     user.getEmail(),
                     roles));
+        } catch (PasswordHashingRejectedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             return ResponseEntity.status(401).body(Map.of("message", "Invalid credentials"));
         }
@@ -75,53 +104,110 @@ public class AuthController {
     public ResponseEntity<?> authenticateGoogle(@RequestBody Map<String, String> request) {
         String credential = request.get("credential");
 
-        try {
-            // In a real implementation, you would verify the Google JWT token here
-            // For now, we'll decode it to get the email
-            // You should use Google's token verification library in production
-
-            String[] parts = credential.split("\\.");
-            if (parts.length < 2) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Invalid credential format"));
-            }
-
-            // Decode the payload (base64url)
-            String payload = new String(java.util.Base64.getUrlDecoder().decode(parts[1]));
-
-            // Parse JSON to get email (simplified - use a JSON library in production)
-            String email = extractEmailFromPayload(payload);
+        if (credential == null || credential.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "credential is required"));
+        }
 
-            if (email == null) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Could not extract email from credential"));
+        try {
+            // Signature, issuer, audience and expiry; keys come from the local JWKS cache
+            GoogleIdTokenVerifier.GoogleIdToken idToken = googleIdTokenVerifier.verify(credential);
+            if (idToken.email() == null || !idToken.emailVerified()) {
+                return ResponseEntity.status(401).body(Map.of("message", "Google account email is not verified"));
             }
 
             // Find or create user
-            User user = userService.findOrCreateGoogleUser(email, payload);
+            User user = userService.findOrCreateGoogleUser(idToken.email(), idToken.name(), idToken.subject());
 
             // Generate JWT token
-            String jwt = jwtUtils.generateTokenFromEmail(email);
+            List<String> roles = List.of("ROLE_USER");
+            String jwt = jwtUtils.generateToken(user, roles);
+            String refreshToken = refreshTokenService.issue(user.getId());
 
             return ResponseEntity.ok(new JwtResponse(jwt,
+                    refreshToken,
                     user.getId(),
                     user.getUsername(),
                     user.getEmail(),
-                    List.of("ROLE_USER")));
+                    roles));
         } catch (Exception e) {
             return ResponseEntity.status(401)
                     .body(Map.of("message", "Google authentication failed: " + e.getMessage()));
         }
     }
 
-    private String extractEmailFromPayload(String payload) {
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh
+     * token. The presented refresh token cannot be used again.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> request) {
+        String refreshToken = request.get("refreshToken");
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "refreshToken is required"));
+        }
+
         try {
-            // Simple JSON parsing - in production use Jackson or Gson
-            int emailStart = payload.indexOf("\"email\":\"") + 9;
-            if (emailStart == 8)
-                return null;
-            int emailEnd = payload.indexOf("\"", emailStart);
-            return payload.substring(emailStart, emailEnd);
-        } catch (Exception e) {
-            return null;
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+            User user = userService.findById(rotation.userId())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+            List<String> roles = rolesFor(user);
+            String jwt = jwtUtils.generateToken(user, roles);
+
+            return ResponseEntity.ok(new JwtResponse(jwt,
+                    rotation.refreshToken(),
+                    user.getId(),
+                    user.getUsername(),
+                    user.getEmail(),
+                    roles));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(401).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Revokes the presented access token and, if given, the refresh token
+     * family it belongs to.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestBody(required = false) Map<String, String> request) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            jwtUtils.getVerifiedClaims(authorization.substring(7))
+                    .ifPresent(claims -> tokenRevocationService.revoke(claims.getId(), claims.getExpiration()));
+        }
+        if (request != null && request.get("refreshToken") != null) {
+            refreshTokenService.revoke(request.get("refreshToken"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Signed out"));
+    }
+
+    /**
+     * Signs the current user out everywhere by invalidating every token
+     * issued to them so far.
+     */
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+        tokenVersionService.revokeAllTokens(principal.getId());
+        refreshTokenService.revokeAllForUser(principal.getId());
+        return ResponseEntity.ok(Map.of("message", "All sessions signed out"));
+    }
+
+    private ResponseEntity<?> tooManyRequests(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(429)
+                .header("Retry-After", "1")
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    // Same roles the user would get from a fresh login
+    private List<String> rolesFor(User user) {
+        if (user.getProvider() == User.AuthProvider.GOOGLE) {
+            return List.of("ROLE_USER");
         }
+        return userDetailsService.loadUserByUsername(user.getUsername()).getAuthorities().stream()
+                .map(item -> item.getAuthority())
+                .collect(Collectors.toList());
     }
 }
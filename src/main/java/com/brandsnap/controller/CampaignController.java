@@ -1,12 +1,16 @@
 package com.brandsnap.controller;
 
 import com.brandsnap.model.Campaign;
+import com.brandsnap.payload.request.BatchGenerationRequest;
+import com.brandsnap.service.BatchGenerationService;
 import com.brandsnap.service.CampaignService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/campaigns")
@@ -15,6 +19,9 @@ public class CampaignController {
     @Autowired
     private CampaignService campaignService;
 
+    @Autowired
+    private BatchGenerationService batchGenerationService;
+
     @PostMapping
     public ResponseEntity<Campaign> createCampaign(@RequestBody Campaign campaign, @RequestParam Long projectId) {
         return ResponseEntity.ok(campaignService.createCampaign(campaign, projectId));
@@ -30,6 +37,18 @@ public class CampaignController {
         return ResponseEntity.ok(campaignService.getCampaignById(id));
     }
 
+    @PostMapping(path = "/{id}/assets:batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> generateAssets(@PathVariable Long id, @RequestBody BatchGenerationRequest request,
+            @RequestParam(defaultValue = "false") boolean fresh) {
+        try {
+            return ResponseEntity.ok(batchGenerationService.generate(id, request, fresh));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteCampaign(@PathVariable Long id) {
         campaignService.deleteCampaign(id);
@@ -0,0 +1,84 @@
+package com.brandsnap.controller;
+
+import com.brandsnap.model.ReferenceImage;
+import com.brandsnap.service.ReferenceImageService;
+import com.brandsnap.storage.AssetContentWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/projects/{projectId}/references")
+public class ReferenceImageController {
+
+    @Autowired
+    private ReferenceImageService referenceImageService;
+
+    @Autowired
+    private AssetContentWriter assetContentWriter;
+
+    @Value("${brandsnap.images.immutable-cache-control}")
+    private String immutableCacheControl;
+
+    /**
+     * Adds an image to the project's library. Uploading bytes the project
+     * already has returns the existing entry with 200 instead of 201.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadReferenceImage(@PathVariable Long projectId,
+            @RequestPart("image") MultipartFile image,
+            @RequestParam(required = false) String name) throws IOException {
+        ReferenceImageService.Upload upload;
+        try {
+            upload = referenceImageService.upload(projectId, image, name);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+        if (!upload.created()) {
+            return ResponseEntity.ok(upload.image());
+        }
+        return ResponseEntity.created(URI.create("/api/projects/" + projectId + "/references/"
+                + upload.image().getId())).body(upload.image());
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<?> uploadTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(413).body(Map.of("message", "Uploaded image is too large"));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ReferenceImage>> getReferenceImages(@PathVariable Long projectId) {
+        return ResponseEntity.ok(referenceImageService.getReferenceImages(projectId));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ReferenceImage> getReferenceImage(@PathVariable Long projectId, @PathVariable Long id) {
+        return ResponseEntity.ok(referenceImageService.getReferenceImage(projectId, id));
+    }
+
+    @GetMapping("/{id}/image")
+    public void getReferenceImageContent(@PathVariable Long projectId, @PathVariable Long id,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ReferenceImage image = referenceImageService.getReferenceImage(projectId, id);
+        // A reference never changes its bytes; a new upload is a new reference
+        assetContentWriter.write(image.getStorageKey(), image.getMimeType(), immutableCacheControl, request,
+                response);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteReferenceImage(@PathVariable Long projectId, @PathVariable Long id) {
+        referenceImageService.deleteReferenceImage(projectId, id);
+        return ResponseEntity.noContent().build();
+    }
+}
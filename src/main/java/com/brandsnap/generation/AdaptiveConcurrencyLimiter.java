@@ -0,0 +1,182 @@
+package com.brandsnap.generation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD concurrency limit for calls to the image provider.
+ *
+ * The limit grows by roughly one per window of successful calls while the
+ * limit is actually in use, and shrinks multiplicatively whenever a call
+ * fails or takes much longer than the smoothed baseline latency. Calls over
+ * the limit are rejected immediately rather than queued, so a slow upstream
+ * cannot make requests (and the images they carry) pile up in memory.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    // Weight of each new sample in the baseline latency
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.generation.limiter.initial-limit:8}")
+    private int initialLimit;
+
+    @Value("${brandsnap.generation.limiter.min-limit:1}")
+    private int minLimit;
+
+    @Value("${brandsnap.generation.limiter.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${brandsnap.generation.limiter.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    // A call slower than baseline * tolerance counts as a congestion signal
+    @Value("${brandsnap.generation.limiter.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private double limit;
+
+    private double baselineNanos;
+
+    private Timer latency;
+
+    private Counter rejected;
+
+    /**
+     * Handle for one admitted call; report exactly one outcome.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        /**
+         * The upstream answered normally.
+         */
+        public void success() {
+            if (release()) {
+                long elapsed = System.nanoTime() - startNanos;
+                latency.record(elapsed, TimeUnit.NANOSECONDS);
+                onSample(elapsed);
+            }
+        }
+
+        /**
+         * The upstream failed or timed out; treated as congestion.
+         */
+        public void dropped() {
+            if (release()) {
+                decrease();
+            }
+        }
+
+        /**
+         * The call failed for a reason that says nothing about upstream load.
+         */
+        public void ignore() {
+            release();
+        }
+
+        private synchronized boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            return true;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        Gauge.builder("brandsnap.generation.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for provider calls")
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.generation.limiter.in_flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+        latency = Timer.builder("brandsnap.generation.limiter.latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rejected = Counter.builder("brandsnap.generation.limiter.rejected")
+                .description("Generation calls shed because the concurrency limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws GenerationRejectedException if the limit is reached
+     */
+    public Permit acquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                throw new GenerationRejectedException("Image generation is at capacity, try again later",
+                        retryAfterSeconds(current));
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    // Roughly how long until the calls ahead of a retry have drained: every
+    // call in flight takes about one baseline latency, limit at a time.
+    private long retryAfterSeconds(int inFlightNow) {
+        double baselineSeconds;
+        int currentLimit;
+        synchronized (this) {
+            baselineSeconds = baselineNanos / 1e9;
+            currentLimit = Math.max(1, (int) limit);
+        }
+        if (baselineSeconds <= 0) {
+            return 1;
+        }
+        double seconds = baselineSeconds * Math.max(1, inFlightNow) / currentLimit;
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    private synchronized void onSample(long elapsedNanos) {
+        if (baselineNanos == 0) {
+            baselineNanos = elapsedNanos;
+            return;
+        }
+        boolean congested = elapsedNanos > baselineNanos * latencyTolerance;
+        baselineNanos += BASELINE_SMOOTHING * (elapsedNanos - baselineNanos);
+        if (congested) {
+            decrease();
+        } else if (inFlight.get() + 1 >= limit / 2) {
+            // Only grow while the limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private synchronized void decrease() {
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        if ((int) previous != (int) limit) {
+            logger.info("Generation concurrency limit lowered to {}", (int) limit);
+        }
+    }
+}
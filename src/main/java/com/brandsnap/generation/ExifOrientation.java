@@ -0,0 +1,117 @@
+package com.brandsnap.generation;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * EXIF orientation of JPEG photos. Re-encoding drops the metadata that
+ * carries it, so the rotation has to be applied to the pixels instead or
+ * phone photos end up sideways.
+ */
+final class ExifOrientation {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1 = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * @return the orientation (1-8), 1 if absent or unreadable
+     */
+    static int read(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+        for (Node sequence = root.getFirstChild(); sequence != null; sequence = sequence.getNextSibling()) {
+            if (!"markerSequence".equals(sequence.getNodeName())) {
+                continue;
+            }
+            for (Node marker = sequence.getFirstChild(); marker != null; marker = marker.getNextSibling()) {
+                if ("unknown".equals(marker.getNodeName()) && isApp1(marker)
+                        && marker instanceof IIOMetadataNode node && node.getUserObject() instanceof byte[] data) {
+                    int orientation = parse(data);
+                    if (orientation != 1) {
+                        return orientation;
+                    }
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static boolean isApp1(Node marker) {
+        NamedNodeMap attributes = marker.getAttributes();
+        Node tag = attributes != null ? attributes.getNamedItem("MarkerTag") : null;
+        try {
+            return tag != null && Integer.parseInt(tag.getNodeValue()) == APP1;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // "Exif\0\0", then a TIFF header whose first IFD holds the orientation
+    private static int parse(byte[] data) {
+        if (data.length < 14 || data[0] != 'E' || data[1] != 'x' || data[2] != 'i' || data[3] != 'f') {
+            return 1;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(data, 6, data.length - 6).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+            return 1;
+        }
+        try {
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                    int value = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return value >= 1 && value <= 8 ? value : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF block
+        }
+        return 1;
+    }
+
+    static BufferedImage apply(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);
+        };
+        boolean swap = orientation >= 5;
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h, image.getType());
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+}
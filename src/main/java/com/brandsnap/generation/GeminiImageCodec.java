@@ -0,0 +1,205 @@
+package com.brandsnap.generation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.util.Optional;
+
+/**
+ * Streaming JSON codec for the Gemini {@code generateContent} API.
+ *
+ * The input image is base64-encoded directly into the request stream and the
+ * response image is base64-decoded directly into a caller supplied sink, so a
+ * request never holds more than a few buffers of image data in heap no matter
+ * how large the image is.
+ */
+@Component
+public class GeminiImageCodec {
+    private static final Logger logger = LoggerFactory.getLogger(GeminiImageCodec.class);
+
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Request body that is generated while the HTTP client sends it. The JSON
+     * is written on a virtual thread into a pipe the client reads from.
+     */
+    public HttpRequest.BodyPublisher requestPublisher(String prompt, InputImage inputImage) {
+        return HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return openRequest(prompt, inputImage);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // The pipe is only closed by the writer thread, after a failure has been
+    // recorded, so the reader never sees end of stream for a partial body
+    InputStream openRequest(String prompt, InputImage inputImage) throws IOException {
+        FailablePipe in = new FailablePipe();
+        PipedOutputStream out = new PipedOutputStream(in);
+        Thread.ofVirtual().name("gemini-request-writer").start(() -> {
+            try {
+                writeRequest(out, prompt, inputImage);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not write provider request: {}", e.getMessage());
+                in.fail(e instanceof IOException io ? io : new IOException(e));
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.debug("Could not close request pipe: {}", e.getMessage());
+                }
+            }
+        });
+        return in;
+    }
+
+    /**
+     * Pipe whose reading side rethrows the writer's failure, so a request
+     * whose body could not be written fails with the real cause.
+     */
+    private static final class FailablePipe extends PipedInputStream {
+        private volatile IOException failure;
+
+        FailablePipe() {
+            super(PIPE_BUFFER_SIZE);
+        }
+
+        void fail(IOException e) {
+            failure = e;
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            checkFailure();
+            int b = super.read();
+            checkFailure();
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            checkFailure();
+            int n = super.read(b, off, len);
+            checkFailure();
+            return n;
+        }
+
+        private void checkFailure() throws IOException {
+            IOException e = failure;
+            if (e != null) {
+                throw new IOException("Could not write provider request", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the request JSON to {@code out}, which is flushed but left open.
+     * A failure part way leaves the JSON unterminated rather than closing
+     * the open arrays and objects.
+     */
+    public void writeRequest(OutputStream out, String prompt, InputImage inputImage) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("contents");
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("parts");
+
+            if (inputImage != null) {
+                Optional<String> fileUri = inputImage.providerFileUri("gemini");
+                generator.writeStartObject();
+                if (fileUri.isPresent()) {
+                    // Uploaded earlier through the Files API; see GeminiFileStore
+                    generator.writeObjectFieldStart("file_data");
+                    generator.writeStringField("mime_type", inputImage.mimeType());
+                    generator.writeStringField("file_uri", fileUri.get());
+                } else {
+                    generator.writeObjectFieldStart("inline_data");
+                    generator.writeStringField("mime_type", inputImage.mimeType());
+                    generator.writeFieldName("data");
+                    inputImage.writeBase64(generator);
+                }
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+
+            generator.writeStartObject();
+            generator.writeStringField("text", prompt);
+            generator.writeEndObject();
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Decodes the first inline image of the response into {@code sink}.
+     *
+     * @return the image mime type
+     * @throws IOException if the response is malformed or carries no image
+     */
+    public String readImage(InputStream in, OutputStream sink) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && isInlineData(parser.currentName())) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        continue;
+                    }
+                    String mimeType = readInlineData(parser, sink);
+                    if (mimeType != null) {
+                        return mimeType;
+                    }
+                }
+            }
+        }
+        throw ProviderException.invalidResponse("No image found in provider response");
+    }
+
+    // Returns the mime type once image data has been written, or null if the
+    // object carried no data.
+    private String readInlineData(JsonParser parser, OutputStream sink) throws IOException {
+        String mimeType = null;
+        boolean hasData = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (("mimeType".equals(field) || "mime_type".equals(field)) && value == JsonToken.VALUE_STRING) {
+                mimeType = parser.getText();
+            } else if ("data".equals(field) && value == JsonToken.VALUE_STRING) {
+                // Decodes base64 incrementally without materializing the string
+                parser.readBinaryValue(sink);
+                hasData = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!hasData) {
+            return null;
+        }
+        return mimeType != null ? mimeType : "image/png";
+    }
+
+    private static boolean isInlineData(String name) {
+        return "inlineData".equals(name) || "inline_data".equals(name);
+    }
+}
@@ -0,0 +1,88 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.storage.AssetStorage;
+import com.brandsnap.storage.StoredObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+/**
+ * Google Gemini {@code generateContent} image models ("Nano Banana").
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.providers.gemini.enabled", havingValue = "true", matchIfMissing = true)
+public class GeminiImageProvider implements ImageGenerationProvider {
+
+    @Autowired
+    private ProviderHttpClient providerHttpClient;
+
+    @Autowired
+    private GeminiImageCodec geminiImageCodec;
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Value("${nano.banana.api.key}")
+    private String apiKey;
+
+    @Value("${nano.banana.api.model}")
+    private String model;
+
+    @Value("${nano.banana.api.url}")
+    private String apiUrl;
+
+    @Override
+    public String getId() {
+        return "gemini";
+    }
+
+    @Override
+    public String getModelId() {
+        return model;
+    }
+
+    @Override
+    public GeneratedImage generate(String prompt, InputImage image) throws IOException {
+        Map<String, String> headers = Map.of(
+                "Content-Type", MediaType.APPLICATION_JSON_VALUE,
+                "x-goog-api-key", apiKey);
+
+        boolean usesFileHandle = image != null && image.providerFileUri(getId()).isPresent();
+
+        // Make API call; both bodies are streamed, never held in memory whole
+        return providerHttpClient.exchange(URI.create(apiUrl), headers,
+                geminiImageCodec.requestPublisher(prompt, image), response -> {
+                    try (InputStream body = response.body()) {
+                        int status = response.statusCode();
+                        // The Files API answers 403/404 for a file_uri that has expired or been deleted
+                        if ((status == 403 || status == 404) && usesFileHandle) {
+                            throw ProviderException.fileRejected(status);
+                        }
+                        if (status / 100 != 2) {
+                            throw ProviderException.status(status, retryAfterSeconds(response));
+                        }
+                        String[] mimeType = new String[1];
+                        StoredObject stored = assetStorage.store(
+                                out -> mimeType[0] = geminiImageCodec.readImage(body, out));
+                        return new GeneratedImage(stored, mimeType[0]);
+                    }
+                });
+    }
+
+    private static long retryAfterSeconds(HttpResponse<?> response) {
+        try {
+            return response.headers().firstValue("Retry-After").map(Long::parseLong).orElse(0L);
+        } catch (NumberFormatException e) {
+            // HTTP-date form; fall back to our own backoff
+            return 0;
+        }
+    }
+}
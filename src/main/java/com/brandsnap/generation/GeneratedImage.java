@@ -0,0 +1,9 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.storage.StoredObject;
+
+/**
+ * Image produced by the provider, already written to asset storage.
+ */
+public record GeneratedImage(StoredObject stored, String mimeType) {
+}
@@ -0,0 +1,202 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.model.GenerationCacheEntry;
+import com.brandsnap.repository.GenerationCacheRepository;
+import com.brandsnap.storage.OrphanedObjectCleaner;
+import com.brandsnap.storage.StoredObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in cache of generation results, keyed by model id, normalized prompt and
+ * the SHA-256 of the input image. Values are only storage keys, since the
+ * images themselves already live in content-addressed {@link com.brandsnap.storage.AssetStorage}.
+ *
+ * Recent entries are held in a size-bounded LRU map; every entry is also
+ * written to the {@code generation_cache} table so the cache survives restarts.
+ */
+@Component
+public class GenerationCache {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationCache.class);
+
+    // Purge expired rows from the table every this many writes
+    private static final int PURGE_INTERVAL = 500;
+
+    @Autowired
+    private GenerationCacheRepository generationCacheRepository;
+
+    @Autowired
+    private OrphanedObjectCleaner orphanedObjectCleaner;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.generation.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${brandsnap.generation.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${brandsnap.generation.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private record Entry(String storageKey, String mimeType, long size, LocalDateTime expiresAt) {
+    }
+
+    private Map<String, Entry> entries;
+
+    private final AtomicInteger writesSincePurge = new AtomicInteger();
+
+    private Counter memoryHits;
+    private Counter persistentHits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        memoryHits = Counter.builder("brandsnap.generation.cache.requests")
+                .tag("result", "hit").tag("tier", "memory").register(meterRegistry);
+        persistentHits = Counter.builder("brandsnap.generation.cache.requests")
+                .tag("result", "hit").tag("tier", "persistent").register(meterRegistry);
+        misses = Counter.builder("brandsnap.generation.cache.requests")
+                .tag("result", "miss").tag("tier", "none").register(meterRegistry);
+        Gauge.builder("brandsnap.generation.cache.size", this, cache -> cache.memorySize())
+                .register(meterRegistry);
+
+        if (enabled) {
+            purgeExpired();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String key(String modelId, String prompt, InputImage inputImage) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalizePrompt(prompt).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (inputImage != null) {
+            digest.update(inputImage.contentHash().getBytes(StandardCharsets.US_ASCII));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<GeneratedImage> get(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.expiresAt().isAfter(now)
+                && orphanedObjectCleaner.retain(entry.storageKey())) {
+            memoryHits.increment();
+            return Optional.of(toImage(entry));
+        }
+
+        Optional<GenerationCacheEntry> row = generationCacheRepository.findById(key);
+        if (row.isPresent() && row.get().getExpiresAt().isAfter(now)
+                && orphanedObjectCleaner.retain(row.get().getStorageKey())) {
+            GenerationCacheEntry stored = row.get();
+            entry = new Entry(stored.getStorageKey(), stored.getMimeType(),
+                    stored.getByteSize() != null ? stored.getByteSize() : 0, stored.getExpiresAt());
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+            persistentHits.increment();
+            return Optional.of(toImage(entry));
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(String key, GeneratedImage image) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMinutes(ttlMinutes));
+        Entry entry = new Entry(image.stored().key(), image.mimeType(), image.stored().size(), expiresAt);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+
+        GenerationCacheEntry row = new GenerationCacheEntry();
+        row.setCacheKey(key);
+        row.setStorageKey(entry.storageKey());
+        row.setMimeType(entry.mimeType());
+        row.setByteSize(entry.size());
+        row.setExpiresAt(expiresAt);
+        try {
+            generationCacheRepository.save(row);
+        } catch (Exception e) {
+            logger.warn("Could not persist generation cache entry: {}", e.getMessage());
+        }
+
+        if (writesSincePurge.incrementAndGet() >= PURGE_INTERVAL) {
+            writesSincePurge.set(0);
+            purgeExpired();
+        }
+    }
+
+    private int memorySize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void purgeExpired() {
+        try {
+            int purged = generationCacheRepository.deleteExpired(LocalDateTime.now());
+            if (purged > 0) {
+                logger.info("Purged {} expired generation cache entries", purged);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not purge generation cache: {}", e.getMessage());
+        }
+    }
+
+    private static GeneratedImage toImage(Entry entry) {
+        return new GeneratedImage(new StoredObject(entry.storageKey(), entry.size(), true), entry.mimeType());
+    }
+
+    // Case is kept on purpose: it can matter for text rendered into the image.
+    public static String normalizePrompt(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        return Normalizer.normalize(prompt, Normalizer.Form.NFC).strip().replaceAll("\\s+", " ");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.model.Asset;
+import com.brandsnap.repository.AssetRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent generation requests into one upstream call.
+ *
+ * Requests with the same campaign, prompt and input image share a single
+ * in-flight future and all receive the asset it produces. Requests carrying an
+ * {@code Idempotency-Key} additionally have their result remembered for a
+ * window, so a client retrying after a timeout gets the same asset back
+ * instead of a second (billed) generation.
+ */
+@Component
+public class GenerationCoalescer {
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.generation.idempotency.window-minutes:60}")
+    private long windowMinutes;
+
+    @Value("${brandsnap.generation.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    private record Remembered(String flightKey, Long assetId, Instant expiresAt) {
+    }
+
+    private final Map<String, CompletableFuture<Asset>> inFlight = new ConcurrentHashMap<>();
+
+    private Map<String, Remembered> remembered;
+
+    private Counter coalesced;
+
+    private Counter replayed;
+
+    @PostConstruct
+    public void init() {
+        remembered = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Remembered> eldest) {
+                return size() > maxEntries || eldest.getValue().expiresAt().isBefore(Instant.now());
+            }
+        };
+        coalesced = Counter.builder("brandsnap.generation.coalesced")
+                .description("Generation requests that joined an identical in-flight request")
+                .register(meterRegistry);
+        replayed = Counter.builder("brandsnap.generation.idempotent.replayed")
+                .description("Generation requests answered from a remembered Idempotency-Key")
+                .register(meterRegistry);
+    }
+
+    public String flightKey(Long campaignId, String prompt, InputImage inputImage) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(String.valueOf(campaignId).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) 0);
+        digest.update(GenerationCache.normalizePrompt(prompt).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (inputImage != null) {
+            digest.update(inputImage.contentHash().getBytes(StandardCharsets.US_ASCII));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Runs {@code work} unless an identical request is already running or the
+     * idempotency key has a remembered result.
+     *
+     * @param idempotencyKey client supplied key, already scoped to the caller; may be null
+     */
+    public Asset execute(String flightKey, String idempotencyKey, Supplier<Asset> work) {
+        if (idempotencyKey != null) {
+            Optional<Asset> previous = lookup(flightKey, idempotencyKey);
+            if (previous.isPresent()) {
+                replayed.increment();
+                return previous.get();
+            }
+        }
+
+        CompletableFuture<Asset> mine = new CompletableFuture<>();
+        CompletableFuture<Asset> running = inFlight.putIfAbsent(flightKey, mine);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+
+        try {
+            Asset asset = work.get();
+            if (idempotencyKey != null) {
+                remember(flightKey, idempotencyKey, asset);
+            }
+            mine.complete(asset);
+            return asset;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    private Optional<Asset> lookup(String flightKey, String idempotencyKey) {
+        Remembered entry;
+        synchronized (remembered) {
+            entry = remembered.get(idempotencyKey);
+        }
+        if (entry == null || entry.expiresAt().isBefore(Instant.now())) {
+            return Optional.empty();
+        }
+        if (!entry.flightKey().equals(flightKey)) {
+            throw new IdempotencyKeyReuseException("Idempotency-Key was already used for a different request");
+        }
+        return assetRepository.findById(entry.assetId());
+    }
+
+    private void remember(String flightKey, String idempotencyKey, Asset asset) {
+        Remembered entry = new Remembered(flightKey, asset.getId(), Instant.now().plus(Duration.ofMinutes(windowMinutes)));
+        synchronized (remembered) {
+            remembered.put(idempotencyKey, entry);
+        }
+    }
+
+    private static Asset join(CompletableFuture<Asset> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
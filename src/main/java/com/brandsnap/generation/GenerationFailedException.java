@@ -0,0 +1,12 @@
+package com.brandsnap.generation;
+
+/**
+ * Thrown when the provider could not produce an image, after any retries.
+ * Controllers map it to {@code 502 Bad Gateway}.
+ */
+public class GenerationFailedException extends RuntimeException {
+
+    public GenerationFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
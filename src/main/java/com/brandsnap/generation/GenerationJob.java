@@ -0,0 +1,92 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.model.Asset;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory state of an asynchronous asset generation request.
+ */
+public class GenerationJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String id;
+    private final Long campaignId;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Asset asset;
+    private volatile String error;
+    private volatile Instant completedAt;
+
+    @JsonIgnore
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    public GenerationJob(String id, Long campaignId) {
+        this.id = id;
+        this.campaignId = campaignId;
+    }
+
+    void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    void succeed(Asset asset) {
+        this.asset = asset;
+        this.completedAt = Instant.now();
+        this.status = Status.SUCCEEDED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.completedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    @JsonIgnore
+    public boolean isDone() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    List<SseEmitter> getSubscribers() {
+        return subscribers;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getCampaignId() {
+        return campaignId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Asset getAsset() {
+        return asset;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+}
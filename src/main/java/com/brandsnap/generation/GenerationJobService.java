@@ -0,0 +1,163 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.model.Asset;
+import com.brandsnap.service.AssetService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs asset generation off the request thread. Each job gets its own virtual
+ * thread; a semaphore caps how many of them talk to the provider at once and
+ * {@code max-queued} caps how many may wait, so a burst cannot grow without
+ * bound. Finished jobs are kept for the retention window so clients can poll.
+ */
+@Service
+public class GenerationJobService {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationJobService.class);
+
+    @Autowired
+    private AssetService assetService;
+
+    @Value("${brandsnap.generation.jobs.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${brandsnap.generation.jobs.max-queued:100}")
+    private int maxQueued;
+
+    @Value("${brandsnap.generation.jobs.retention-minutes:30}")
+    private long retentionMinutes;
+
+    @Value("${brandsnap.generation.jobs.sse-timeout-ms:120000}")
+    private long sseTimeoutMs;
+
+    private final Map<String, GenerationJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private ExecutorService executor;
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("generation-job-", 0).factory());
+        permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public GenerationJob submit(Long campaignId, String prompt, String inputImage, boolean fresh,
+            String idempotencyKey) {
+        InputImage image = inputImage != null && !inputImage.isEmpty() ? InputImage.ofBase64(inputImage) : null;
+        return submit(campaignId, prompt, image, fresh, idempotencyKey);
+    }
+
+    /**
+     * Queues a generation. The job takes ownership of the input image and
+     * releases it when it finishes; if the job is rejected the caller still
+     * owns it.
+     */
+    public GenerationJob submit(Long campaignId, String prompt, InputImage inputImage, boolean fresh,
+            String idempotencyKey) {
+        if (pending.incrementAndGet() > maxQueued) {
+            pending.decrementAndGet();
+            throw new GenerationRejectedException("Too many generation jobs in progress, try again later");
+        }
+        evictExpired();
+
+        GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), campaignId);
+        jobs.put(job.getId(), job);
+        executor.submit(() -> run(job, prompt, inputImage, fresh, idempotencyKey));
+        return job;
+    }
+
+    public Optional<GenerationJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public SseEmitter subscribe(GenerationJob job) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> job.getSubscribers().remove(emitter));
+        emitter.onTimeout(() -> job.getSubscribers().remove(emitter));
+        emitter.onError(e -> job.getSubscribers().remove(emitter));
+
+        job.getSubscribers().add(emitter);
+        send(emitter, job);
+        // The job may have finished before we registered; whoever removes the
+        // emitter from the list is responsible for completing it.
+        if (job.isDone() && job.getSubscribers().remove(emitter)) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private void run(GenerationJob job, String prompt, InputImage inputImage, boolean fresh,
+            String idempotencyKey) {
+        try {
+            permits.acquire();
+            try {
+                job.markRunning();
+                publish(job);
+                Asset asset = assetService.generateAsset(job.getCampaignId(), prompt, inputImage, fresh,
+                        idempotencyKey);
+                job.succeed(asset);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("Generation was cancelled");
+        } catch (Exception e) {
+            logger.warn("Generation job {} failed: {}", job.getId(), e.getMessage());
+            job.fail(e.getMessage());
+        } finally {
+            if (inputImage != null) {
+                inputImage.release();
+            }
+            pending.decrementAndGet();
+            publish(job);
+        }
+    }
+
+    private void publish(GenerationJob job) {
+        for (SseEmitter emitter : job.getSubscribers()) {
+            send(emitter, job);
+            if (job.isDone() && job.getSubscribers().remove(emitter)) {
+                emitter.complete();
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, GenerationJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(job));
+        } catch (Exception e) {
+            job.getSubscribers().remove(emitter);
+        }
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> job.isDone() && job.getCompletedAt().isBefore(cutoff));
+    }
+}
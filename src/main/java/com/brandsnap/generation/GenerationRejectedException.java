@@ -0,0 +1,27 @@
+package com.brandsnap.generation;
+
+/**
+ * Thrown when a generation request cannot be accepted because the server is
+ * already at capacity. Controllers map it to {@code 503 Service Unavailable},
+ * with a {@code Retry-After} header when a retry delay is known.
+ */
+public class GenerationRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public GenerationRejectedException(String message) {
+        this(message, 0);
+    }
+
+    public GenerationRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Suggested delay before retrying, or 0 if unknown.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package com.brandsnap.generation;
+
+/**
+ * Thrown when an {@code Idempotency-Key} is sent again with a different
+ * request. Controllers map it to {@code 422 Unprocessable Entity}.
+ */
+public class IdempotencyKeyReuseException extends RuntimeException {
+
+    public IdempotencyKeyReuseException(String message) {
+        super(message);
+    }
+}
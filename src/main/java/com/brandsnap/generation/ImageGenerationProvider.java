@@ -0,0 +1,32 @@
+package com.brandsnap.generation;
+
+import java.io.IOException;
+
+/**
+ * A backend that turns a prompt (and optional input image) into a stored
+ * image. Implementations are Spring beans; {@link ImageProviderRouter}
+ * picks one per call.
+ */
+public interface ImageGenerationProvider {
+
+    /**
+     * Short stable name used in configuration
+     * ({@code brandsnap.providers.<id>.*}) and metrics.
+     */
+    String getId();
+
+    /**
+     * Model the provider generates with; part of the generation cache key.
+     */
+    String getModelId();
+
+    /**
+     * Makes one generation call and stores the resulting image.
+     *
+     * @throws ProviderException           if the provider answered without an
+     *                                     image
+     * @throws IOException                 on network or storage failures
+     * @throws GenerationRejectedException if the provider is saturated
+     */
+    GeneratedImage generate(String prompt, InputImage inputImage) throws IOException;
+}
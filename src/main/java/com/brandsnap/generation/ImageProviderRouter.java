@@ -0,0 +1,254 @@
+package com.brandsnap.generation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of {@link ImageGenerationProvider} beans and the routing between
+ * them.
+ *
+ * Each provider keeps a rolling window of recent calls. Its effective weight
+ * is the configured {@code brandsnap.providers.<id>.weight}, scaled down by
+ * its error rate and by how much slower its p95 latency is than the fastest
+ * provider's. The primary provider for a call is drawn at random in
+ * proportion to those weights; the others follow as failover targets in
+ * descending weight, with providers above the error-rate ceiling last.
+ */
+@Component
+public class ImageProviderRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ImageProviderRouter.class);
+
+    @Autowired
+    private List<ImageGenerationProvider> providers;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Value("${brandsnap.providers.routing.window:100}")
+    private int window;
+
+    @Value("${brandsnap.providers.routing.max-error-rate:0.5}")
+    private double maxErrorRate;
+
+    // Share of calls sent first to an unhealthy provider so it can recover
+    @Value("${brandsnap.providers.routing.probe-ratio:0.02}")
+    private double probeRatio;
+
+    private List<Route> routes;
+
+    private final class Route {
+        final ImageGenerationProvider provider;
+        final double weight;
+        final long[] latencies = new long[Math.max(1, window)];
+        final boolean[] failures = new boolean[Math.max(1, window)];
+        int count;
+        int index;
+
+        Route(ImageGenerationProvider provider, double weight) {
+            this.provider = provider;
+            this.weight = weight;
+        }
+
+        synchronized void record(long latencyNanos, boolean failed) {
+            latencies[index] = latencyNanos;
+            failures[index] = failed;
+            index = (index + 1) % latencies.length;
+            count = Math.min(latencies.length, count + 1);
+        }
+
+        synchronized double errorRate() {
+            int failed = 0;
+            for (int i = 0; i < count; i++) {
+                if (failures[i]) {
+                    failed++;
+                }
+            }
+            return count == 0 ? 0 : (double) failed / count;
+        }
+
+        // p95 over successful calls only; 0 while there is no data
+        synchronized long p95Nanos() {
+            long[] ok = new long[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (!failures[i]) {
+                    ok[n++] = latencies[i];
+                }
+            }
+            if (n == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(ok, n);
+            Arrays.sort(sorted);
+            return sorted[Math.min(n - 1, (int) Math.ceil(0.95 * n) - 1)];
+        }
+    }
+
+    private record Scored(Route route, double score, boolean healthy) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (providers.isEmpty()) {
+            throw new IllegalStateException("No image generation provider is enabled");
+        }
+        routes = new ArrayList<>();
+        for (ImageGenerationProvider provider : providers) {
+            double weight = environment.getProperty("brandsnap.providers." + provider.getId() + ".weight",
+                    Double.class, 1.0);
+            Route route = new Route(provider, weight);
+            routes.add(route);
+            Gauge.builder("brandsnap.providers.p95", route, r -> r.p95Nanos() / 1e6)
+                    .tag("provider", provider.getId())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("brandsnap.providers.error_rate", route, Route::errorRate)
+                    .tag("provider", provider.getId())
+                    .register(meterRegistry);
+        }
+        logger.info("Image generation providers: {}", routes.stream()
+                .map(r -> r.provider.getId() + " (weight " + r.weight + ")")
+                .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Identifies the set of enabled models, for cache keys: images cached
+     * while one set of providers was active are not served by another.
+     */
+    public String getModelKey() {
+        return routes.stream()
+                .map(r -> r.provider.getModelId())
+                .sorted()
+                .collect(Collectors.joining("+"));
+    }
+
+    /**
+     * Generates with the routed primary provider, failing over to the next
+     * one on errors that another provider might not have. Every provider
+     * call holds an {@link AdaptiveConcurrencyLimiter} permit, so calls are
+     * shed the same way whichever provider serves them.
+     */
+    public GeneratedImage generate(String prompt, InputImage inputImage) throws IOException {
+        List<Route> order = order();
+        Exception last = null;
+        for (Route route : order) {
+            // Sheds the call right away when providers are already saturated
+            AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+            long start = System.nanoTime();
+            try {
+                GeneratedImage image = route.provider.generate(prompt, inputImage);
+                permit.success();
+                route.record(System.nanoTime() - start, false);
+                return image;
+            } catch (GenerationRejectedException e) {
+                // Saturated, not broken; try the next provider without penalty
+                permit.ignore();
+                last = e;
+            } catch (ProviderException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelled (a hedge that lost), not a provider failure
+                    permit.ignore();
+                    throw e;
+                }
+                // Throttling, server errors and bad bodies mean the provider is
+                // overloaded; other statuses say nothing about load
+                int status = e.getStatus();
+                if (status == 0 || status == 429 || status / 100 == 5) {
+                    permit.dropped();
+                } else {
+                    permit.ignore();
+                }
+                route.record(System.nanoTime() - start, e.isRetryable());
+                if (!e.isRetryable()) {
+                    throw e;
+                }
+                last = e;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    permit.ignore();
+                    throw e;
+                }
+                permit.dropped();
+                route.record(System.nanoTime() - start, true);
+                last = e;
+            } catch (RuntimeException e) {
+                permit.dropped();
+                throw e;
+            }
+            if (order.size() > 1) {
+                logger.info("Provider {} failed ({}), failing over", route.provider.getId(), last.getMessage());
+            }
+        }
+        if (last instanceof IOException io) {
+            throw io;
+        }
+        throw (RuntimeException) last;
+    }
+
+    private List<Route> order() {
+        if (routes.size() == 1) {
+            return routes;
+        }
+        long fastest = routes.stream()
+                .mapToLong(Route::p95Nanos)
+                .filter(p95 -> p95 > 0)
+                .min()
+                .orElse(0);
+        List<Scored> scored = new ArrayList<>();
+        for (Route route : routes) {
+            double errorRate = route.errorRate();
+            long p95 = route.p95Nanos();
+            double speed = p95 > 0 && fastest > 0 ? (double) fastest / p95 : 1.0;
+            double score = route.weight * (1 - errorRate) * speed;
+            scored.add(new Scored(route, score, errorRate <= maxErrorRate));
+        }
+        scored.sort(Comparator.comparing(Scored::healthy).reversed()
+                .thenComparing(Comparator.comparingDouble(Scored::score).reversed()));
+
+        // Weighted draw among the healthy providers for the primary
+        double total = scored.stream().filter(Scored::healthy).mapToDouble(Scored::score).sum();
+        int primary = 0;
+        int unhealthy = (int) scored.stream().filter(s -> !s.healthy()).count();
+        if (unhealthy > 0 && ThreadLocalRandom.current().nextDouble() < probeRatio) {
+            primary = scored.size() - 1 - ThreadLocalRandom.current().nextInt(unhealthy);
+        } else if (total > 0) {
+            double pick = ThreadLocalRandom.current().nextDouble(total);
+            for (int i = 0; i < scored.size() && scored.get(i).healthy(); i++) {
+                pick -= scored.get(i).score();
+                if (pick < 0) {
+                    primary = i;
+                    break;
+                }
+            }
+        }
+        List<Route> order = new ArrayList<>(scored.size());
+        order.add(scored.get(primary).route());
+        for (int i = 0; i < scored.size(); i++) {
+            if (i != primary) {
+                order.add(scored.get(i).route());
+            }
+        }
+        return order;
+    }
+}
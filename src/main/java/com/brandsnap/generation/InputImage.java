@@ -0,0 +1,127 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.storage.ImageMimeTypes;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Reference image sent to the provider alongside the prompt. Implementations
+ * write their payload into the request as a base64 JSON string without first
+ * building that string in memory: {@link Base64Text} for images that arrived
+ * as base64 JSON, {@link SpooledInputImage} for multipart uploads and
+ * {@link StoredInputImage} for project reference images.
+ */
+public interface InputImage {
+
+    String mimeType();
+
+    void writeBase64(JsonGenerator generator) throws IOException;
+
+    /**
+     * Opens the image bytes. Used where the whole image has to be looked at,
+     * such as hashing or re-encoding.
+     */
+    InputStream openStream() throws IOException;
+
+    /**
+     * Frees whatever backs the image, such as a spooled upload file. Called
+     * once the generation that uses it has finished.
+     */
+    default void release() {
+    }
+
+    /**
+     * URI of a copy already uploaded to the given provider's file API, which
+     * the provider request can reference instead of inlining the bytes.
+     */
+    default Optional<String> providerFileUri(String providerId) {
+        return Optional.empty();
+    }
+
+    /**
+     * SHA-256 of the decoded image bytes, lowercase hex.
+     */
+    default String contentHash() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = openStream();
+                OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            in.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Wraps a {@code data:} URL or bare base64 string as sent by the frontend.
+     * The base64 text is copied into the request straight from the original
+     * string, so it is neither substring-copied nor decoded and re-encoded.
+     */
+    static InputImage ofBase64(String value) {
+        String mimeType = null;
+        int start = 0;
+        if (value.startsWith("data:")) {
+            int commaIndex = value.indexOf(',');
+            if (commaIndex != -1) {
+                int semicolon = value.indexOf(';');
+                if (semicolon > 5 && semicolon < commaIndex) {
+                    mimeType = value.substring(5, semicolon);
+                }
+                start = commaIndex + 1;
+            }
+        }
+        if (mimeType == null) {
+            mimeType = sniffBase64(value, start).orElse("image/jpeg");
+        }
+        return new Base64Text(value, start, mimeType);
+    }
+
+    // Decodes just enough leading characters to recognize the format
+    private static Optional<String> sniffBase64(String value, int start) {
+        int chars = (ImageMimeTypes.HEADER_LENGTH + 2) / 3 * 4;
+        if (value.length() - start < chars) {
+            return Optional.empty();
+        }
+        try {
+            byte[] header = Base64.getDecoder().decode(value.substring(start, start + chars));
+            return ImageMimeTypes.detect(header, header.length);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    record Base64Text(String value, int start, String mimeType) implements InputImage {
+
+        @Override
+        public void writeBase64(JsonGenerator generator) throws IOException {
+            StringReader reader = new StringReader(value);
+            reader.skip(start);
+            generator.writeString(reader, value.length() - start);
+        }
+
+        @Override
+        public InputStream openStream() {
+            return Base64.getMimeDecoder().wrap(new InputStream() {
+                private int position = start;
+
+                @Override
+                public int read() {
+                    return position < value.length() ? value.charAt(position++) : -1;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.brandsnap.generation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks input images before they are sent to a provider. Clients often
+ * send full-resolution phone photos that the model downsamples anyway, so
+ * each image is decoded, rotated per its EXIF orientation, scaled down to
+ * {@code max-edge}, and re-encoded without any metadata.
+ *
+ * Decoding and encoding run on a small pool sized to the CPU cores behind a
+ * bounded queue. Results are cached in memory by content hash, and
+ * concurrent requests for the same image wait for a single run. Whenever
+ * normalizing is not possible or not worth it (pool saturated, unreadable
+ * format, result no smaller) the original image is used unchanged.
+ */
+@Component
+public class InputImageNormalizer {
+    private static final Logger logger = LoggerFactory.getLogger(InputImageNormalizer.class);
+
+    // Marks images that are best sent as they are
+    private static final Result UNCHANGED = new Result(null, null);
+
+    // Key, map entry and record; charged for every entry so that cached
+    // UNCHANGED results count against the byte budget too
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private record Result(byte[] data, String mimeType) {
+        long cost() {
+            return ENTRY_OVERHEAD_BYTES + (data != null ? data.length : 0);
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.input-images.normalize.enabled:true}")
+    private boolean enabled;
+
+    @Value("${brandsnap.input-images.normalize.max-edge:1536}")
+    private int maxEdge;
+
+    @Value("${brandsnap.input-images.normalize.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // Smaller images are sent as they are
+    @Value("${brandsnap.input-images.normalize.min-bytes:65536}")
+    private long minBytes;
+
+    // Decompression bomb guard; larger images are sent as they are
+    @Value("${brandsnap.input-images.normalize.max-source-pixels:50000000}")
+    private long maxSourcePixels;
+
+    // 0 means one thread per available core
+    @Value("${brandsnap.input-images.normalize.threads:0}")
+    private int threads;
+
+    @Value("${brandsnap.input-images.normalize.max-queued:32}")
+    private int maxQueued;
+
+    @Value("${brandsnap.input-images.normalize.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${brandsnap.input-images.normalize.cache-max-bytes:67108864}")
+    private long cacheMaxBytes;
+
+    private ThreadPoolExecutor executor;
+
+    // Access-ordered, eldest first; keyed by content hash of the original
+    private final LinkedHashMap<String, Result> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes;
+
+    private final Map<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+    private Timer hashTimer;
+    private Timer decodeTimer;
+    private Timer scaleTimer;
+    private Timer encodeTimer;
+    private DistributionSummary bytesIn;
+    private DistributionSummary bytesOut;
+    private Counter bytesSaved;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "input-image-normalizer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        hashTimer = stageTimer("hash");
+        decodeTimer = stageTimer("decode");
+        scaleTimer = stageTimer("scale");
+        encodeTimer = stageTimer("encode");
+        bytesIn = DistributionSummary.builder("brandsnap.input_images.bytes_in")
+                .baseUnit("bytes")
+                .description("Size of input images as received")
+                .register(meterRegistry);
+        bytesOut = DistributionSummary.builder("brandsnap.input_images.bytes_out")
+                .baseUnit("bytes")
+                .description("Size of input images as sent to the provider")
+                .register(meterRegistry);
+        bytesSaved = Counter.builder("brandsnap.input_images.bytes_saved")
+                .baseUnit("bytes")
+                .description("Upload bytes saved by normalizing input images")
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.input_images.normalize.queued", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.input_images.normalize.cache_bytes", this, n -> n.cachedBytesSnapshot())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("brandsnap.input_images.normalize")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private void outcome(String outcome) {
+        meterRegistry.counter("brandsnap.input_images.normalize.outcome", "outcome", outcome).increment();
+    }
+
+    /**
+     * Returns a normalized copy of {@code image}, or {@code image} itself if
+     * it is best sent unchanged. Stored images (project references) already
+     * carry a size-capped copy and are returned as they are. The caller keeps
+     * releasing the original.
+     */
+    public InputImage normalize(InputImage image) {
+        if (!enabled || image == null || image instanceof StoredInputImage) {
+            return image;
+        }
+        long size = knownSize(image);
+        if (size >= 0 && size < minBytes) {
+            return image;
+        }
+        String hash;
+        try {
+            hash = hashTimer.recordCallable(image::contentHash);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid input image", e);
+        }
+
+        Result result = cached(hash);
+        if (result != null) {
+            outcome("cached");
+        } else {
+            result = compute(hash, image);
+        }
+        if (result == UNCHANGED) {
+            return image;
+        }
+        return SpooledInputImage.inMemory(result.data(), result.mimeType());
+    }
+
+    // Size without reading the image, or -1
+    private static long knownSize(InputImage image) {
+        if (image instanceof SpooledInputImage spooled) {
+            return spooled.size();
+        }
+        if (image instanceof InputImage.Base64Text text) {
+            return (text.value().length() - text.start()) / 4L * 3;
+        }
+        return -1;
+    }
+
+    private Result compute(String hash, InputImage image) {
+        CompletableFuture<Result> mine = new CompletableFuture<>();
+        CompletableFuture<Result> running = inFlight.putIfAbsent(hash, mine);
+        if (running != null) {
+            return await(running, null);
+        }
+        try {
+            Future<Result> future;
+            try {
+                future = executor.submit(() -> process(image));
+            } catch (RejectedExecutionException e) {
+                // Saturated; sending the original is slower but still correct
+                outcome("rejected");
+                mine.complete(UNCHANGED);
+                return UNCHANGED;
+            }
+            Result result = await(future, hash);
+            mine.complete(result);
+            return result;
+        } finally {
+            inFlight.remove(hash, mine);
+        }
+    }
+
+    // Waits for a run; any failure means the original is sent. Only the
+    // caller that started the run (hash != null) records its result.
+    private Result await(Future<Result> future, String hash) {
+        try {
+            Result result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (hash != null) {
+                store(hash, result);
+            }
+            return result;
+        } catch (TimeoutException e) {
+            if (hash != null) {
+                future.cancel(true);
+                outcome("timeout");
+            }
+            return UNCHANGED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return UNCHANGED;
+        } catch (ExecutionException e) {
+            if (hash != null) {
+                logger.warn("Could not normalize input image {}: {}", hash, e.getCause().getMessage());
+                outcome("failed");
+                // Same bytes will fail the same way; do not retry them
+                store(hash, UNCHANGED);
+            }
+            return UNCHANGED;
+        }
+    }
+
+    private Result process(InputImage image) throws IOException {
+        BufferedImage decoded;
+        int orientation;
+        long originalSize;
+        long decodeStart = System.nanoTime();
+        try (InputStream data = image.openStream();
+                CountingInputStream counting = new CountingInputStream(data);
+                ImageInputStream in = ImageIO.createImageInputStream(counting)) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                // E.g. WebP; providers take it as is
+                outcome("unsupported");
+                return UNCHANGED;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    outcome("too_large");
+                    return UNCHANGED;
+                }
+                // Keep at least twice the target resolution for a smooth final scale
+                double ratio = (double) Math.max(width, height) / maxEdge;
+                int subsampling = Math.max(1, (int) Math.floor(ratio / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                decoded = reader.read(0, param);
+                orientation = ExifOrientation.read(reader.getImageMetadata(0));
+            } finally {
+                reader.dispose();
+            }
+            // Drain so the size reflects the whole original, not just what was decoded
+            counting.transferTo(OutputStream.nullOutputStream());
+            originalSize = counting.count();
+        }
+        decodeTimer.record(System.nanoTime() - decodeStart, TimeUnit.NANOSECONDS);
+        if (originalSize < minBytes) {
+            outcome("unchanged");
+            return UNCHANGED;
+        }
+
+        boolean opaque = !decoded.getColorModel().hasAlpha();
+        long scaleStart = System.nanoTime();
+        BufferedImage scaled = ExifOrientation.apply(scale(decoded, opaque), orientation);
+        scaleTimer.record(System.nanoTime() - scaleStart, TimeUnit.NANOSECONDS);
+
+        // JPEG for photos; PNG where there is transparency to keep
+        String format = opaque ? "jpg" : "png";
+        long encodeStart = System.nanoTime();
+        byte[] encoded = encode(scaled, format);
+        encodeTimer.record(System.nanoTime() - encodeStart, TimeUnit.NANOSECONDS);
+
+        bytesIn.record(originalSize);
+        if (encoded.length >= originalSize) {
+            bytesOut.record(originalSize);
+            outcome("unchanged");
+            return UNCHANGED;
+        }
+        bytesOut.record(encoded.length);
+        bytesSaved.increment(originalSize - encoded.length);
+        outcome("normalized");
+        logger.debug("Normalized input image from {} to {} bytes ({}x{})", originalSize, encoded.length,
+                scaled.getWidth(), scaled.getHeight());
+        return new Result(encoded, opaque ? "image/jpeg" : "image/png");
+    }
+
+    private BufferedImage scale(BufferedImage source, boolean opaque) {
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage target = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            if (opaque) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            // No stream or image metadata: EXIF, GPS and ICC profiles are dropped
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private Result cached(String hash) {
+        synchronized (cache) {
+            return cache.get(hash);
+        }
+    }
+
+    private void store(String hash, Result result) {
+        synchronized (cache) {
+            Result previous = cache.put(hash, result);
+            cachedBytes += result.cost() - (previous != null ? previous.cost() : 0);
+            Iterator<Result> eldest = cache.values().iterator();
+            while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+                cachedBytes -= eldest.next().cost();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+
+    private long cachedBytesSnapshot() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+}
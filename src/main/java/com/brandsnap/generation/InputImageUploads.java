@@ -0,0 +1,87 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.storage.ImageMimeTypes;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Turns multipart uploads into {@link SpooledInputImage}s. The real format is
+ * taken from the file's magic bytes, never from the client-supplied content
+ * type. Small uploads stay in memory; larger ones are moved into the spool
+ * directory so they survive past the request for async jobs.
+ */
+@Component
+public class InputImageUploads {
+    private static final Logger logger = LoggerFactory.getLogger(InputImageUploads.class);
+
+    @Value("${brandsnap.uploads.max-image-bytes:10485760}")
+    private long maxImageBytes;
+
+    @Value("${brandsnap.uploads.memory-threshold-bytes:262144}")
+    private long memoryThresholdBytes;
+
+    @Value("${brandsnap.uploads.spool-dir:${java.io.tmpdir}/brandsnap-uploads}")
+    private String spoolDir;
+
+    private Path spoolPath;
+
+    @PostConstruct
+    public void init() throws IOException {
+        spoolPath = Paths.get(spoolDir).toAbsolutePath().normalize();
+        Files.createDirectories(spoolPath);
+        // Leftovers from a previous run whose jobs never finished
+        try (var files = Files.list(spoolPath)) {
+            files.forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.debug("Could not remove stale upload {}: {}", file, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the upload is empty, too large or
+     *                                  not a supported image format
+     */
+    public SpooledInputImage spool(MultipartFile upload) throws IOException {
+        long size = upload.getSize();
+        if (size <= 0) {
+            throw new IllegalArgumentException("Uploaded image is empty");
+        }
+        if (size > maxImageBytes) {
+            throw new IllegalArgumentException("Uploaded image exceeds " + maxImageBytes + " bytes");
+        }
+
+        String mimeType;
+        try (InputStream in = upload.getInputStream()) {
+            byte[] header = in.readNBytes(ImageMimeTypes.HEADER_LENGTH);
+            mimeType = ImageMimeTypes.detect(header, header.length)
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported image format"));
+        }
+
+        if (size <= memoryThresholdBytes) {
+            return SpooledInputImage.inMemory(upload.getBytes(), mimeType);
+        }
+        Path file = Files.createTempFile(spoolPath, "input-", ".upload");
+        try {
+            // Moves the container's own temp file where possible instead of copying
+            upload.transferTo(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return SpooledInputImage.onDisk(file, size, mimeType);
+    }
+}
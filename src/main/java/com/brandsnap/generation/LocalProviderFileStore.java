@@ -0,0 +1,54 @@
+package com.brandsnap.generation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline stand-in for a provider file API, paired with
+ * {@link StubImageProvider}. It only remembers which URIs it handed out and
+ * until when, so tests can exercise handle reuse and expiry (the stub
+ * provider rejects unknown or expired handles like a real provider would).
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.providers.stub.enabled", havingValue = "true")
+public class LocalProviderFileStore implements ProviderFileStore {
+
+    @Value("${brandsnap.providers.stub.file-ttl-minutes:60}")
+    private long fileTtlMinutes;
+
+    private final Map<String, ProviderFile> files = new ConcurrentHashMap<>();
+
+    @Override
+    public String getProviderId() {
+        return "stub";
+    }
+
+    @Override
+    public ProviderFile upload(InputImage image, long size, String displayName) throws IOException {
+        // Hashing reads the whole image, like a real upload would
+        String uri = "local://files/" + image.contentHash() + "/" + UUID.randomUUID();
+        ProviderFile file = new ProviderFile(uri, Instant.now().plus(Duration.ofMinutes(fileTtlMinutes)));
+        files.put(uri, file);
+        return file;
+    }
+
+    public boolean isValid(String uri) {
+        ProviderFile file = files.get(uri);
+        if (file == null) {
+            return false;
+        }
+        if (file.expiresAt().isBefore(Instant.now())) {
+            files.remove(uri, file);
+            return false;
+        }
+        return true;
+    }
+}
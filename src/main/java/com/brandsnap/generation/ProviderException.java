@@ -0,0 +1,68 @@
+package com.brandsnap.generation;
+
+import java.io.IOException;
+
+/**
+ * A provider call that reached the provider but did not produce an image:
+ * either a non-2xx status or a response without image data. Only throttling
+ * and server errors are worth retrying.
+ */
+public class ProviderException extends IOException {
+
+    private final int status;
+
+    private final long retryAfterSeconds;
+
+    private final boolean fileRejected;
+
+    private ProviderException(String message, int status, long retryAfterSeconds, boolean fileRejected) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.fileRejected = fileRejected;
+    }
+
+    public static ProviderException status(int status, long retryAfterSeconds) {
+        return new ProviderException("Provider returned status " + status, status, retryAfterSeconds, false);
+    }
+
+    /**
+     * The request referenced an uploaded input file the provider no longer
+     * has or no longer lets us use.
+     */
+    public static ProviderException fileRejected(int status) {
+        return new ProviderException("Provider rejected the uploaded input file (status " + status + ")", status, 0,
+                true);
+    }
+
+    public static ProviderException invalidResponse(String message) {
+        return new ProviderException(message, 0, 0, false);
+    }
+
+    /**
+     * HTTP status, or 0 if the status was fine but the body was not.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * The provider's {@code Retry-After} in seconds, or 0 if it sent none.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Whether sending the input image inline instead of by file handle may
+     * succeed.
+     */
+    public boolean isFileRejected() {
+        return fileRejected;
+    }
+
+    public boolean isRetryable() {
+        return status == 408 || status == 429 || status == 500 || status == 502 || status == 503
+                || status == 504;
+    }
+}
@@ -0,0 +1,29 @@
+package com.brandsnap.generation;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Provider-side file API for input images that are sent many times, such as
+ * brand reference images. Once uploaded, requests to the same provider refer
+ * to the file by URI instead of carrying its bytes (see
+ * {@link InputImage#providerFileUri(String)}).
+ */
+public interface ProviderFileStore {
+
+    record ProviderFile(String uri, Instant expiresAt) {
+    }
+
+    /**
+     * Id of the {@link ImageGenerationProvider} that accepts these files.
+     */
+    String getProviderId();
+
+    /**
+     * Uploads {@code size} bytes of {@code image}.
+     *
+     * @throws ProviderException if the provider refused the upload
+     * @throws IOException       on network failures
+     */
+    ProviderFile upload(InputImage image, long size, String displayName) throws IOException;
+}
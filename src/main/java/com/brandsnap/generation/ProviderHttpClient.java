@@ -0,0 +1,272 @@
+package com.brandsnap.generation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Shared HTTP client for the image generation provider.
+ *
+ * Built on {@link HttpClient}, which keeps persistent connections per host and
+ * multiplexes requests over HTTP/2 when the server supports it. Every call has
+ * a deadline and must first take a permit from a per-host semaphore, so a slow
+ * provider can neither pin threads forever nor open unbounded connections.
+ * Streamed response bodies are read inside the same permit and deadline.
+ */
+@Component
+public class ProviderHttpClient {
+    private static final Logger logger = LoggerFactory.getLogger(ProviderHttpClient.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.provider.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${brandsnap.provider.http.request-timeout-ms:60000}")
+    private long requestTimeoutMs;
+
+    @Value("${brandsnap.provider.http.max-concurrent-per-host:16}")
+    private int maxConcurrentPerHost;
+
+    @Value("${brandsnap.provider.http.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    @Value("${brandsnap.provider.http.prewarm:true}")
+    private boolean prewarm;
+
+    @Value("${nano.banana.api.url}")
+    private String prewarmUrl;
+
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    private HttpClient httpClient;
+
+    private Counter rejected;
+
+    private final class HostLimiter {
+        final Semaphore permits = new Semaphore(maxConcurrentPerHost, true);
+        final Timer latency;
+
+        HostLimiter(String host) {
+            Gauge.builder("brandsnap.provider.http.in_flight", permits,
+                    p -> maxConcurrentPerHost - p.availablePermits())
+                    .tag("host", host)
+                    .description("Provider requests currently holding a connection permit")
+                    .register(meterRegistry);
+            Gauge.builder("brandsnap.provider.http.waiting", permits, Semaphore::getQueueLength)
+                    .tag("host", host)
+                    .description("Callers waiting for a connection permit")
+                    .register(meterRegistry);
+            latency = Timer.builder("brandsnap.provider.http.latency")
+                    .tag("host", host)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        rejected = Counter.builder("brandsnap.provider.http.rejected")
+                .description("Provider requests rejected because no connection permit was free in time")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Opens the TLS/HTTP/2 connection to the provider before the first real
+     * request needs it. Any response, including an error status, is enough.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        if (!prewarm || prewarmUrl == null || prewarmUrl.isBlank()) {
+            return;
+        }
+        URI uri = URI.create(prewarmUrl);
+        HttpRequest request = HttpRequest.newBuilder(uri.resolve("/"))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        logger.warn("Could not pre-warm connection to {}: {}", uri.getHost(), e.getMessage());
+                    } else {
+                        logger.info("Pre-warmed {} connection to {}", response.version(), uri.getHost());
+                    }
+                });
+    }
+
+    /**
+     * Reads a streamed response body while the exchange is in progress.
+     */
+    @FunctionalInterface
+    public interface ResponseReader<R> {
+        R read(HttpResponse<InputStream> response) throws IOException;
+    }
+
+    public <T> HttpResponse<T> post(URI uri, Map<String, String> headers, HttpRequest.BodyPublisher body,
+            HttpResponse.BodyHandler<T> responseHandler) throws IOException {
+        return post(uri, headers, body, responseHandler, Duration.ofMillis(requestTimeoutMs));
+    }
+
+    /**
+     * Sends a POST and waits for the response until the deadline passes. The
+     * deadline covers waiting for a permit as well as the exchange itself.
+     * The response body must already be read by {@code responseHandler};
+     * use {@link #exchange} to stream it.
+     */
+    public <T> HttpResponse<T> post(URI uri, Map<String, String> headers, HttpRequest.BodyPublisher body,
+            HttpResponse.BodyHandler<T> responseHandler, Duration deadline) throws IOException {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        HostLimiter limiter = limiters.computeIfAbsent(uri.getHost(), HostLimiter::new);
+
+        acquire(limiter, uri, Math.min(TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs), deadline.toNanos()));
+        try {
+            return send(limiter, uri, headers, body, responseHandler, deadlineNanos);
+        } finally {
+            limiter.permits.release();
+        }
+    }
+
+    public <R> R exchange(URI uri, Map<String, String> headers, HttpRequest.BodyPublisher body,
+            ResponseReader<R> reader) throws IOException {
+        return exchange(uri, headers, body, reader, Duration.ofMillis(requestTimeoutMs));
+    }
+
+    /**
+     * Sends a POST and hands the streamed response to {@code reader}. The
+     * permit is held and the deadline runs until the reader returns; a body
+     * still arriving when the deadline passes aborts the exchange, so a
+     * stalled upstream cannot pin the caller.
+     */
+    public <R> R exchange(URI uri, Map<String, String> headers, HttpRequest.BodyPublisher body,
+            ResponseReader<R> reader, Duration deadline) throws IOException {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        HostLimiter limiter = limiters.computeIfAbsent(uri.getHost(), HostLimiter::new);
+
+        acquire(limiter, uri, Math.min(TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs), deadline.toNanos()));
+        try {
+            HttpResponse<InputStream> response = send(limiter, uri, headers, body,
+                    HttpResponse.BodyHandlers.ofInputStream(), deadlineNanos);
+            // Read on another thread so the deadline can abandon a blocked read
+            Future<R> reading = executor.submit(() -> reader.read(response));
+            try {
+                return reading.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new HttpTimeoutException("Response from " + uri.getHost() + " exceeded its deadline");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading from " + uri.getHost(), e);
+            } finally {
+                if (!reading.isDone()) {
+                    reading.cancel(true);
+                }
+                // Closing the body cancels the exchange if it is still running
+                try {
+                    response.body().close();
+                } catch (IOException e) {
+                    logger.debug("Could not close response from {}: {}", uri.getHost(), e.getMessage());
+                }
+            }
+        } finally {
+            limiter.permits.release();
+        }
+    }
+
+    private <T> HttpResponse<T> send(HostLimiter limiter, URI uri, Map<String, String> headers,
+            HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> responseHandler, long deadlineNanos)
+            throws IOException {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            throw new HttpTimeoutException("Deadline passed before request to " + uri.getHost() + " was sent");
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofNanos(remaining))
+                .POST(body);
+        headers.forEach(request::header);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<HttpResponse<T>> future = httpClient.sendAsync(request.build(), responseHandler);
+        try {
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("Request to " + uri.getHost() + " exceeded its deadline");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + uri.getHost(), e);
+        } finally {
+            sample.stop(limiter.latency);
+        }
+    }
+
+    private void acquire(HostLimiter limiter, URI uri, long timeoutNanos) throws IOException {
+        try {
+            if (!limiter.permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new HttpTimeoutException("No free connection to " + uri.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + uri.getHost(), e);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.brandsnap.generation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Retry, hedging and circuit breaking around provider calls.
+ *
+ * <ul>
+ * <li>Retryable failures (throttling, 5xx, network errors) are retried with
+ * exponential backoff and full jitter, honouring the provider's
+ * {@code Retry-After} when it sends one.</li>
+ * <li>When hedging is enabled, an attempt still running after the recent
+ * latency percentile gets a second, parallel attempt; the first success
+ * wins, the loser is cancelled and waited for, and a result it still
+ * produced is handed to a discard callback. A cancelled loser's failure is
+ * not counted against the provider.</li>
+ * <li>A count-based circuit breaker opens once the failure rate over the
+ * last calls crosses the threshold. While open, calls fail fast with
+ * {@link GenerationRejectedException}; after the open period a single trial
+ * call decides whether it closes again.</li>
+ * </ul>
+ *
+ * Failures that survive all of this surface as
+ * {@link GenerationFailedException}.
+ */
+@Component
+public class ProviderResiliencePolicy {
+    private static final Logger logger = LoggerFactory.getLogger(ProviderResiliencePolicy.class);
+
+    private static final int LATENCY_SAMPLES = 100;
+
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.provider.resilience.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${brandsnap.provider.resilience.base-delay-ms:250}")
+    private long baseDelayMs;
+
+    @Value("${brandsnap.provider.resilience.max-delay-ms:5000}")
+    private long maxDelayMs;
+
+    @Value("${brandsnap.provider.resilience.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${brandsnap.provider.resilience.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${brandsnap.provider.resilience.hedge.min-delay-ms:2000}")
+    private long hedgeMinDelayMs;
+
+    @Value("${brandsnap.provider.resilience.breaker.window:20}")
+    private int breakerWindow;
+
+    @Value("${brandsnap.provider.resilience.breaker.min-calls:10}")
+    private int breakerMinCalls;
+
+    @Value("${brandsnap.provider.resilience.breaker.failure-rate:0.5}")
+    private double breakerFailureRate;
+
+    @Value("${brandsnap.provider.resilience.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    /**
+     * One provider call.
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T call() throws IOException;
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Circuit breaker state, guarded by this
+    private State state = State.CLOSED;
+    private boolean[] outcomes;
+    private int outcomeCount;
+    private int outcomeIndex;
+    private long openedAtMillis;
+    private boolean trialInFlight;
+
+    // Recent successful attempt latencies, guarded by latencies
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyIndex;
+
+    private ExecutorService executor;
+
+    private Counter retries;
+
+    private Counter hedges;
+
+    private Counter shortCircuited;
+
+    @PostConstruct
+    public void init() {
+        outcomes = new boolean[Math.max(1, breakerWindow)];
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("provider-hedge-", 0).factory());
+        retries = Counter.builder("brandsnap.provider.resilience.retries").register(meterRegistry);
+        hedges = Counter.builder("brandsnap.provider.resilience.hedges").register(meterRegistry);
+        shortCircuited = Counter.builder("brandsnap.provider.resilience.short_circuited")
+                .description("Provider calls failed fast because the circuit breaker was open")
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.provider.resilience.breaker_open", this, p -> p.isOpen() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param discard receives (loser, winner) for every successful hedged
+     *                attempt whose result was not used
+     * @throws GenerationRejectedException if the circuit is open or the call
+     *                                     was shed by the concurrency limiter
+     * @throws GenerationFailedException   if every attempt failed
+     */
+    public <T> T execute(Attempt<T> attempt, BiConsumer<T, T> discard) {
+        for (int n = 1;; n++) {
+            acquirePermission();
+            try {
+                return hedgeEnabled ? hedged(attempt, discard) : timed(attempt, () -> false);
+            } catch (GenerationRejectedException e) {
+                releaseTrial();
+                throw e;
+            } catch (Exception e) {
+                if (!isRetryable(e) || n >= maxAttempts || isOpen()) {
+                    throw new GenerationFailedException("Image generation failed: " + e.getMessage(), e);
+                }
+                long delay = backoffMillis(n, e);
+                logger.info("Provider call failed ({}), retrying in {} ms", e.getMessage(), delay);
+                retries.increment();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new GenerationFailedException("Image generation was interrupted", e);
+                }
+            }
+        }
+    }
+
+    private <T> T timed(Attempt<T> attempt, BooleanSupplier superseded) throws IOException {
+        long start = System.nanoTime();
+        try {
+            T result = attempt.call();
+            recordLatency(System.nanoTime() - start);
+            onOutcome(true);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            // A hedged attempt cancelled because the other one won says
+            // nothing about the provider
+            if (!(e instanceof GenerationRejectedException) && !superseded.getAsBoolean()) {
+                // Non-retryable errors mean the provider is up and answering
+                onOutcome(!isRetryable(e));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * An attempt running on its own thread, which can be cancelled and
+     * waited for until it has really stopped.
+     */
+    private static final class HedgedAttempt<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean cancelled;
+        volatile Thread thread;
+
+        void cancel() {
+            cancelled = true;
+            Thread running = thread;
+            if (running != null) {
+                running.interrupt();
+            }
+        }
+
+        void awaitFinished() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private <T> T hedged(Attempt<T> attempt, BiConsumer<T, T> discard) throws Exception {
+        long hedgeDelayMs = hedgeDelayMillis();
+        HedgedAttempt<T> first = submit(attempt);
+        if (hedgeDelayMs <= 0) {
+            return await(first.result);
+        }
+        try {
+            return first.result.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (TimeoutException e) {
+            hedges.increment();
+        }
+
+        HedgedAttempt<T> second = submit(attempt);
+        List<HedgedAttempt<T>> attempts = List.of(first, second);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (HedgedAttempt<T> candidate : attempts) {
+            candidate.result.whenComplete((result, error) -> {
+                if (error == null) {
+                    if (!winner.complete(result)) {
+                        T used = winner.join();
+                        if (result != used) {
+                            discard.accept(result, used);
+                        }
+                    }
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return await(winner);
+        } finally {
+            // The loser still reads the input image, which the caller
+            // releases as soon as this returns; stop it and wait until it has
+            for (HedgedAttempt<T> candidate : attempts) {
+                if (!candidate.result.isDone()) {
+                    candidate.cancel();
+                }
+            }
+            for (HedgedAttempt<T> candidate : attempts) {
+                candidate.awaitFinished();
+            }
+        }
+    }
+
+    private <T> HedgedAttempt<T> submit(Attempt<T> attempt) {
+        HedgedAttempt<T> hedged = new HedgedAttempt<>();
+        executor.execute(() -> {
+            hedged.thread = Thread.currentThread();
+            try {
+                if (hedged.cancelled) {
+                    hedged.result.cancel(false);
+                    return;
+                }
+                hedged.result.complete(timed(attempt, () -> hedged.cancelled));
+            } catch (Throwable e) {
+                hedged.result.completeExceptionally(e);
+            } finally {
+                hedged.thread = null;
+                hedged.finished.countDown();
+            }
+        });
+        return hedged;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof Exception exception) {
+            return exception;
+        }
+        throw (Error) cause;
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof ProviderException providerException) {
+            return providerException.isRetryable();
+        }
+        // Network and timeout failures; a response we cannot parse will not parse next time either
+        return e instanceof IOException && !(e instanceof JsonProcessingException);
+    }
+
+    private long backoffMillis(int attempt, Exception e) {
+        if (e instanceof ProviderException providerException && providerException.getRetryAfterSeconds() > 0) {
+            return Math.min(maxDelayMs, providerException.getRetryAfterSeconds() * 1000);
+        }
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    // 0 disables hedging for this call: not enough history yet
+    private long hedgeDelayMillis() {
+        long[] samples;
+        synchronized (latencies) {
+            if (latencyCount < MIN_HEDGE_SAMPLES) {
+                return 0;
+            }
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        int index = Math.min(samples.length - 1, (int) Math.ceil(hedgePercentile * samples.length) - 1);
+        return Math.max(hedgeMinDelayMs, TimeUnit.NANOSECONDS.toMillis(samples[Math.max(0, index)]));
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyIndex] = nanos;
+            latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(LATENCY_SAMPLES, latencyCount + 1);
+        }
+    }
+
+    private synchronized void acquirePermission() {
+        if (state == State.OPEN) {
+            long remaining = openedAtMillis + breakerOpenMs - System.currentTimeMillis();
+            if (remaining > 0) {
+                shortCircuited.increment();
+                throw new GenerationRejectedException("Image provider is unavailable, try again later",
+                        Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining)));
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                shortCircuited.increment();
+                throw new GenerationRejectedException("Image provider is recovering, try again later", 1);
+            }
+            trialInFlight = true;
+        }
+    }
+
+    private synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    private synchronized boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    private synchronized void onOutcome(boolean success) {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if (success) {
+                logger.info("Provider circuit breaker closed");
+                state = State.CLOSED;
+                outcomeCount = 0;
+                outcomeIndex = 0;
+            } else {
+                open();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        outcomes[outcomeIndex] = success;
+        outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+        outcomeCount = Math.min(outcomes.length, outcomeCount + 1);
+        if (outcomeCount >= breakerMinCalls) {
+            int failures = 0;
+            for (int i = 0; i < outcomeCount; i++) {
+                if (!outcomes[i]) {
+                    failures++;
+                }
+            }
+            if (failures >= breakerFailureRate * outcomeCount) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        logger.warn("Provider circuit breaker opened for {} ms", breakerOpenMs);
+        state = State.OPEN;
+        openedAtMillis = System.currentTimeMillis();
+        outcomeCount = 0;
+        outcomeIndex = 0;
+    }
+}
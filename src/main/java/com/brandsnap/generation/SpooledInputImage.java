@@ -0,0 +1,72 @@
+package com.brandsnap.generation;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Uploaded input image, held either in a small byte array or, above the
+ * spool threshold, in a temp file. The base64 for the provider request is
+ * encoded on the fly while streaming the bytes, so heap use does not grow
+ * with the image size.
+ */
+public final class SpooledInputImage implements InputImage {
+
+    private final byte[] bytes;
+    private final Path file;
+    private final long size;
+    private final String mimeType;
+
+    private SpooledInputImage(byte[] bytes, Path file, long size, String mimeType) {
+        this.bytes = bytes;
+        this.file = file;
+        this.size = size;
+        this.mimeType = mimeType;
+    }
+
+    static SpooledInputImage inMemory(byte[] bytes, String mimeType) {
+        return new SpooledInputImage(bytes, null, bytes.length, mimeType);
+    }
+
+    static SpooledInputImage onDisk(Path file, long size, String mimeType) {
+        return new SpooledInputImage(null, file, size, mimeType);
+    }
+
+    @Override
+    public String mimeType() {
+        return mimeType;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void writeBase64(JsonGenerator generator) throws IOException {
+        try (InputStream in = openStream()) {
+            generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, in, (int) size);
+        }
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return bytes != null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+    }
+
+    @Override
+    public void release() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Cleared on the next startup at the latest
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
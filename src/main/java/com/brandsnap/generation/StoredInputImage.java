@@ -0,0 +1,90 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.storage.AssetStorage;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Input image that is already in {@link AssetStorage}, such as a project
+ * reference image. The storage key is the content hash, so nothing has to be
+ * read to build cache keys, and provider file handles let the bytes be
+ * skipped altogether for providers that have a copy.
+ */
+public final class StoredInputImage implements InputImage {
+
+    private final AssetStorage assetStorage;
+    private final String key;
+    private final String mimeType;
+    private final long size;
+    private final Map<String, String> providerFileUris;
+    private final Runnable onProviderFilesRejected;
+
+    public StoredInputImage(AssetStorage assetStorage, String key, String mimeType, long size,
+            Map<String, String> providerFileUris) {
+        this(assetStorage, key, mimeType, size, providerFileUris, () -> {
+        });
+    }
+
+    /**
+     * @param onProviderFilesRejected called when a provider refused a request
+     *                                that referenced one of the file handles
+     */
+    public StoredInputImage(AssetStorage assetStorage, String key, String mimeType, long size,
+            Map<String, String> providerFileUris, Runnable onProviderFilesRejected) {
+        this.assetStorage = assetStorage;
+        this.key = key;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.providerFileUris = Map.copyOf(providerFileUris);
+        this.onProviderFilesRejected = onProviderFilesRejected;
+    }
+
+    public boolean hasProviderFiles() {
+        return !providerFileUris.isEmpty();
+    }
+
+    /**
+     * Reports that a provider refused the handles, and returns the same
+     * image to be sent inline instead.
+     */
+    public StoredInputImage rejectProviderFiles() {
+        onProviderFilesRejected.run();
+        return new StoredInputImage(assetStorage, key, mimeType, size, Map.of());
+    }
+
+    @Override
+    public String mimeType() {
+        return mimeType;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void writeBase64(JsonGenerator generator) throws IOException {
+        try (InputStream in = openStream()) {
+            generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, in, (int) size);
+        }
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return assetStorage.open(key);
+    }
+
+    @Override
+    public String contentHash() {
+        return key;
+    }
+
+    @Override
+    public Optional<String> providerFileUri(String providerId) {
+        return Optional.ofNullable(providerFileUris.get(providerId));
+    }
+}
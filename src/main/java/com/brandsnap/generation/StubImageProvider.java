@@ -0,0 +1,111 @@
+package com.brandsnap.generation;
+
+import com.brandsnap.storage.AssetStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * Offline provider for benchmarks and CI. The same prompt and input image
+ * always produce the same PNG (a seeded grid of colored tiles), after a
+ * configurable simulated latency. An optional error rate makes it fail a
+ * deterministic share of calls with a 503 so failover paths can be tested.
+ * Input images may arrive as handles from {@link LocalProviderFileStore}.
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.providers.stub.enabled", havingValue = "true")
+public class StubImageProvider implements ImageGenerationProvider {
+
+    private static final int TILES = 8;
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Autowired
+    private LocalProviderFileStore fileStore;
+
+    @Value("${brandsnap.providers.stub.latency-ms:200}")
+    private long latencyMs;
+
+    @Value("${brandsnap.providers.stub.latency-jitter-ms:0}")
+    private long latencyJitterMs;
+
+    @Value("${brandsnap.providers.stub.size:512}")
+    private int size;
+
+    @Value("${brandsnap.providers.stub.error-rate:0}")
+    private double errorRate;
+
+    @Override
+    public String getId() {
+        return "stub";
+    }
+
+    @Override
+    public String getModelId() {
+        return "stub-v1";
+    }
+
+    @Override
+    public GeneratedImage generate(String prompt, InputImage inputImage) throws IOException {
+        // Like a real file API, a handle that was never issued or has expired is an error
+        Optional<String> fileUri = inputImage != null ? inputImage.providerFileUri(getId()) : Optional.empty();
+        if (fileUri.isPresent() && !fileStore.isValid(fileUri.get())) {
+            throw ProviderException.status(400, 0);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed(prompt, inputImage));
+
+        long delay = latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        if (random.nextDouble() < errorRate) {
+            throw ProviderException.status(503, 0);
+        }
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            int tile = (size + TILES - 1) / TILES;
+            for (int y = 0; y < TILES; y++) {
+                for (int x = 0; x < TILES; x++) {
+                    graphics.setColor(new Color(random.nextInt(0x1000000)));
+                    graphics.fillRect(x * tile, y * tile, tile, tile);
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return new GeneratedImage(assetStorage.store(out -> ImageIO.write(image, "png", out)), "image/png");
+    }
+
+    private static long seed(String prompt, InputImage inputImage) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(GenerationCache.normalizePrompt(prompt).getBytes(StandardCharsets.UTF_8));
+            if (inputImage != null) {
+                digest.update(inputImage.contentHash().getBytes(StandardCharsets.UTF_8));
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
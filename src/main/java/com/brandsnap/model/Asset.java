@@ -11,8 +11,19 @@ public class Asset {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, columnDefinition = "LONGTEXT")
-    private String imageData;
+    // SHA-256 of the image bytes held in AssetStorage
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    @Column(name = "mime_type", length = 64)
+    private String mimeType;
+
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    private Integer width;
+
+    private Integer height;
 
     @Column(columnDefinition = "TEXT")
     private String prompt;
@@ -20,4 +31,13 @@ public class Asset {
     @ManyToOne
     @JoinColumn(name = "campaign_id", nullable = false)
     private Campaign campaign;
+
+    public String getImageUrl() {
+        return id != null ? "/api/assets/" + id + "/image" : null;
+    }
+
+    // Immutable URL of the current image bytes
+    public String getContentUrl() {
+        return storageKey != null ? "/api/assets/content/" + storageKey : null;
+    }
 }
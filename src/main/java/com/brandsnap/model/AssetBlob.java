@@ -0,0 +1,43 @@
+package com.brandsnap.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import java.time.LocalDateTime;
+
+/**
+ * Image bytes for the in-database storage mode ({@code brandsnap.storage.type=db}).
+ * The bytes are stored raw in a LONGBLOB rather than base64 text; with
+ * bytecode enhancement the column is only loaded when {@link #getData()} is
+ * called, so metadata lookups never pull the image.
+ */
+@Entity
+@Data
+@Table(name = "asset_blobs")
+public class AssetBlob {
+    // SHA-256 of the content, same key as every other AssetStorage
+    @Id
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    @Column(name = "mime_type", length = 64)
+    private String mimeType;
+
+    @Column(name = "byte_size", nullable = false)
+    private Long byteSize;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
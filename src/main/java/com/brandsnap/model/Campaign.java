@@ -23,7 +23,9 @@ public class Campaign {
     @com.fasterxml.jackson.annotation.JsonIgnore
     private List<Asset> assets;
 
-    public int getAssetCount() {
-        return assets != null ? assets.size() : 0;
-    }
+    // Filled in by CampaignService from an aggregate query; never derived from
+    // the assets collection, which would load every asset of the campaign.
+    @Transient
+    @com.fasterxml.jackson.annotation.JsonInclude(com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL)
+    private Long assetCount;
 }
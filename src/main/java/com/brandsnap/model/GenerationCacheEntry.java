@@ -0,0 +1,34 @@
+package com.brandsnap.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Table(name = "generation_cache")
+public class GenerationCacheEntry {
+    // SHA-256 of model id, normalized prompt and input image hash
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey;
+
+    @Column(name = "mime_type", length = 64)
+    private String mimeType;
+
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
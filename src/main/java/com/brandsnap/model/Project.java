@@ -28,6 +28,10 @@ public class Project {
     @com.fasterxml.jackson.annotation.JsonIgnore
     private List<Campaign> campaigns;
 
+    @OneToMany(mappedBy = "project", cascade = CascadeType.ALL, orphanRemoval = true)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private List<ReferenceImage> referenceImages;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,20 @@
+package com.brandsnap.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * A copy of a reference image already uploaded to a provider's file API,
+ * which later requests can point at instead of sending the bytes again.
+ */
+@Embeddable
+@Data
+public class ProviderFileHandle {
+    @Column(name = "file_uri", nullable = false, length = 512)
+    private String uri;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,75 @@
+package com.brandsnap.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Entity
+@Data
+@Table(name = "reference_images", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_reference_images_project_content", columnNames = { "project_id", "storage_key" })
+})
+public class ReferenceImage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    @JsonIgnore
+    private Project project;
+
+    private String name;
+
+    // SHA-256 of the original upload; one row per distinct image and project
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey;
+
+    @Column(name = "mime_type", length = 64)
+    private String mimeType;
+
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    private Integer width;
+
+    private Integer height;
+
+    // Size-capped copy sent to providers; equal to storageKey when the
+    // original already fits
+    @Column(name = "normalized_key", nullable = false, length = 64)
+    private String normalizedKey;
+
+    @Column(name = "normalized_mime_type", length = 64)
+    private String normalizedMimeType;
+
+    @Column(name = "normalized_byte_size")
+    private Long normalizedByteSize;
+
+    // Keyed by provider id
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "reference_image_files", joinColumns = @JoinColumn(name = "reference_image_id"))
+    @MapKeyColumn(name = "provider_id", length = 32)
+    @JsonIgnore
+    private Map<String, ProviderFileHandle> providerFiles = new HashMap<>();
+
+    private LocalDateTime createdAt;
+
+    public Long getProjectId() {
+        return project != null ? project.getId() : null;
+    }
+
+    public String getImageUrl() {
+        return id != null && project != null
+                ? "/api/projects/" + project.getId() + "/references/" + id + "/image"
+                : null;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,43 @@
+package com.brandsnap.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_family", columnList = "family_id"),
+        @Index(name = "idx_refresh_tokens_user", columnList = "user_id")
+})
+public class RefreshToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 of the opaque token; the token itself is never stored
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // All tokens produced by rotating one login share a family
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Set once the token has been exchanged for a new one
+    private LocalDateTime usedAt;
+
+    private boolean revoked = false;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
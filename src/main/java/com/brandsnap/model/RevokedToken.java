@@ -0,0 +1,24 @@
+package com.brandsnap.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revokedAt")
+})
+public class RevokedToken {
+    // jti of the revoked access token
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    // Entries are only needed until the token would have expired anyway
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime revokedAt;
+}
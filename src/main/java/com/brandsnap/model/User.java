@@ -1,5 +1,6 @@
 package com.brandsnap.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
@@ -36,6 +37,11 @@ public class User {
     @Column(name = "provider_id")
     private String providerId;
 
+    // Bumped to invalidate every token issued to this user
+    @JsonIgnore
+    @Column(name = "token_version", nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int tokenVersion = 0;
+
     private LocalDateTime createdAt;
 
     @PrePersist
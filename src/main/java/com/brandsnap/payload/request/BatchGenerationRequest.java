@@ -0,0 +1,20 @@
+package com.brandsnap.payload.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Body of {@code POST /api/campaigns/{id}/assets:batch}. Either a list of
+ * prompts, or a single prompt with the number of variants to generate.
+ */
+@Data
+public class BatchGenerationRequest {
+    private List<String> prompts;
+
+    private String prompt;
+
+    private Integer variants;
+
+    private String inputImage; // Optional, shared by every item
+}
@@ -0,0 +1,10 @@
+package com.brandsnap.payload.response;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated asset listing. Pass {@code nextCursor} back
+ * as {@code cursor} to fetch the following page; it is null on the last page.
+ */
+public record AssetPage(List<AssetSummary> items, Long nextCursor) {
+}
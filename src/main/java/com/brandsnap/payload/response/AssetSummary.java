@@ -0,0 +1,30 @@
+package com.brandsnap.payload.response;
+
+/**
+ * Asset listing entry. Carries only metadata and URLs, never image bytes.
+ */
+public record AssetSummary(
+        Long id,
+        String prompt,
+        String storageKey,
+        String mimeType,
+        Long byteSize,
+        Integer width,
+        Integer height) {
+
+    private static final int THUMBNAIL_SIZE = 256;
+
+    public String getImageUrl() {
+        return "/api/assets/" + id + "/image";
+    }
+
+    public String getContentUrl() {
+        return storageKey != null ? "/api/assets/content/" + storageKey : null;
+    }
+
+    // Content-addressed, so browsers and CDNs can cache it for good
+    public String getThumbnailUrl() {
+        String base = storageKey != null ? getContentUrl() : getImageUrl();
+        return base + "?w=" + THUMBNAIL_SIZE + "&h=" + THUMBNAIL_SIZE;
+    }
+}
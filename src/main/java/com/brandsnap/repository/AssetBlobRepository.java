@@ -0,0 +1,13 @@
+package com.brandsnap.repository;
+
+import com.brandsnap.model.AssetBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Optional;
+
+public interface AssetBlobRepository extends JpaRepository<AssetBlob, String> {
+    // Never touches the data column
+    @Query("SELECT b.byteSize FROM AssetBlob b WHERE b.storageKey = :key")
+    Optional<Long> findByteSize(@Param("key") String key);
+}
@@ -1,10 +1,27 @@
 package com.brandsnap.repository;
 
 import com.brandsnap.model.Asset;
-import com.brandsnap.model.Campaign;
+import com.brandsnap.payload.response.AssetSummary;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface AssetRepository extends JpaRepository<Asset, Long> {
-    List<Asset> findByCampaign(Campaign campaign);
+public interface AssetRepository extends JpaRepository<Asset, Long>, AssetRepositoryCustom {
+    Optional<Asset> findFirstByStorageKey(String storageKey);
+
+    long countByCampaignId(Long campaignId);
+
+    // Rows of [campaignId, assetCount]; campaigns without assets are absent
+    @Query("SELECT a.campaign.id, COUNT(a) FROM Asset a WHERE a.campaign.id IN :campaignIds GROUP BY a.campaign.id")
+    List<Object[]> countByCampaignIds(@Param("campaignIds") Collection<Long> campaignIds);
+
+    // Keyset pagination: walks the (campaign_id, id) index from the cursor
+    @Query("SELECT new com.brandsnap.payload.response.AssetSummary(a.id, a.prompt, a.storageKey, a.mimeType,"
+            + " a.byteSize, a.width, a.height)"
+            + " FROM Asset a WHERE a.campaign.id = :campaignId AND a.id > :cursor ORDER BY a.id")
+    List<AssetSummary> findSummaries(@Param("campaignId") Long campaignId, @Param("cursor") Long cursor, Limit limit);
 }
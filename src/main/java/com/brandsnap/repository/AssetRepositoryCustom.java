@@ -0,0 +1,11 @@
+package com.brandsnap.repository;
+
+import com.brandsnap.model.Asset;
+import java.util.List;
+
+public interface AssetRepositoryCustom {
+    /**
+     * Inserts new assets with a single JDBC batch and sets their generated ids.
+     */
+    void insertAll(List<Asset> assets);
+}
@@ -0,0 +1,53 @@
+package com.brandsnap.repository;
+
+import com.brandsnap.model.Asset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+// Hibernate cannot batch inserts for IDENTITY ids, so bulk inserts go through JDBC
+public class AssetRepositoryImpl implements AssetRepositoryCustom {
+    private static final String INSERT_SQL = "INSERT INTO assets"
+            + " (campaign_id, prompt, storage_key, mime_type, byte_size, width, height)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void insertAll(List<Asset> assets) {
+        if (assets.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Asset asset : assets) {
+                    ps.setLong(1, asset.getCampaign().getId());
+                    ps.setString(2, asset.getPrompt());
+                    ps.setString(3, asset.getStorageKey());
+                    ps.setString(4, asset.getMimeType());
+                    ps.setObject(5, asset.getByteSize(), Types.BIGINT);
+                    ps.setObject(6, asset.getWidth(), Types.INTEGER);
+                    ps.setObject(7, asset.getHeight(), Types.INTEGER);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < assets.size()) {
+                        assets.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.brandsnap.repository;
+
+import com.brandsnap.model.GenerationCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+
+public interface GenerationCacheRepository extends JpaRepository<GenerationCacheEntry, String> {
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GenerationCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,14 @@
+package com.brandsnap.repository;
+
+import com.brandsnap.model.ReferenceImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReferenceImageRepository extends JpaRepository<ReferenceImage, Long> {
+    List<ReferenceImage> findByProjectIdOrderByIdDesc(Long projectId);
+
+    Optional<ReferenceImage> findByIdAndProjectId(Long id, Long projectId);
+
+    Optional<ReferenceImage> findByProjectIdAndStorageKey(Long projectId, String storageKey);
+}
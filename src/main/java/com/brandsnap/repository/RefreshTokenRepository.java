@@ -0,0 +1,35 @@
+package com.brandsnap.repository;
+
+import com.brandsnap.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Conditional so that two concurrent refreshes cannot both rotate the same token
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshToken t SET t.usedAt = :now WHERE t.id = :id AND t.usedAt IS NULL AND t.revoked = false")
+    int markUsed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshToken t SET t.revoked = true WHERE t.familyId = :familyId")
+    int revokeFamily(@Param("familyId") String familyId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshToken t SET t.revoked = true WHERE t.userId = :userId")
+    int revokeAllForUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshToken t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -7,6 +7,8 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import io.jsonwebtoken.Claims;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +26,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -31,10 +39,21 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            // Verified once; repeat tokens and known users are served from memory
+            Claims claims = jwt != null ? jwtUtils.getVerifiedClaims(jwt).orElse(null) : null;
+            if (claims != null && !tokenRevocationService.isRevoked(claims.getId())) {
+                UserDetails userDetails;
+                if (jwtUtils.isSelfContained(claims)) {
+                    UserPrincipal principal = jwtUtils.toPrincipal(claims);
+                    if (!tokenVersionService.isCurrent(principal.getId(), jwtUtils.getTokenVersion(claims))) {
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
+                    userDetails = principal;
+                } else {
+                    // Tokens issued before claims were versioned only carry the subject
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                }
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -0,0 +1,179 @@
+package com.brandsnap.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder that runs every hash on a small pool sized to the CPU
+ * cores, behind a bounded queue. A login burst can then use at most those
+ * cores; once the queue is full callers get a
+ * {@link PasswordHashingRejectedException} straight away instead of piling
+ * up on request threads.
+ *
+ * Hashes whose cost differs from the configured one report
+ * {@link #upgradeEncoding}, so Spring Security rehashes them on the next
+ * successful login (see {@link CustomUserDetailsService#updatePassword}).
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abyx]?\\$(\\d\\d)\\$");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.security.password.bcrypt-cost:10}")
+    private int cost;
+
+    // 0 means one thread per available core
+    @Value("${brandsnap.security.password.threads:0}")
+    private int threads;
+
+    @Value("${brandsnap.security.password.max-queued:64}")
+    private int maxQueued;
+
+    @Value("${brandsnap.security.password.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private BCryptPasswordEncoder delegate;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer encodeTimer;
+
+    private Timer matchesTimer;
+
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        delegate = new BCryptPasswordEncoder(cost);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        encodeTimer = Timer.builder("brandsnap.password.hash")
+                .tag("operation", "encode")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        matchesTimer = Timer.builder("brandsnap.password.hash")
+                .tag("operation", "matches")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rejected = Counter.builder("brandsnap.password.hash.rejected")
+                .description("Password hash operations rejected because the hashing pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.password.hash.queued", executor, e -> e.getQueue().size())
+                .description("Password hash operations waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Times one hash at the configured cost and at its neighbours on this
+     * machine, so the cost can be tuned from the startup log. Each step of
+     * cost doubles the time per hash.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void benchmark() {
+        try {
+            executor.submit(() -> {
+                for (int c = Math.max(4, cost - 1); c <= Math.min(31, cost + 1); c++) {
+                    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(c);
+                    encoder.encode("warm-up");
+                    long start = System.nanoTime();
+                    encoder.encode("benchmark");
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+                    logger.info("BCrypt cost {} takes {} ms per hash on this host{}", c, millis,
+                            c == cost ? " (configured)" : "");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Skipping BCrypt benchmark, hashing pool is busy");
+        }
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != cost;
+    }
+
+    private <T> T run(Timer timer, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Too many sign-in attempts in progress, try again later");
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Password hashing timed out, try again later");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
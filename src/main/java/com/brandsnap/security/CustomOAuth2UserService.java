@@ -17,6 +17,9 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
         OAuth2User oauth2User = super.loadUser(userRequest);
@@ -34,6 +37,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
             if (!user.getProvider().equals(User.AuthProvider.GOOGLE)) {
                 throw new OAuth2AuthenticationException("Email already registered with " + user.getProvider());
             }
+            userDetailsService.evictUser(user);
             user.setUsername(userInfo.getName());
         } else {
             // Create new user
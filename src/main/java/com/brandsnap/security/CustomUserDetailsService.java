@@ -3,21 +3,42 @@ package com.brandsnap.security;
 import com.brandsnap.model.User;
 import com.brandsnap.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Value("${brandsnap.app.userCacheTtlSeconds:300}")
+    private long userCacheTtlSeconds;
+
+    @Value("${brandsnap.app.userCacheSize:10000}")
+    private int userCacheSize;
+
+    private record CachedUser(UserDetails userDetails, long expiresAtMillis) {
+    }
+
+    // Keyed by the name the user was looked up with (username or email)
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        CachedUser cached = cache.get(username);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return copyOf(cached.userDetails());
+        }
+
         // Try to find by username first
         User user = userRepository.findByUsername(username)
                 .orElse(null);
@@ -28,7 +49,7 @@ public class CustomUserDetailsService implements UserDetailsService {
                     .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         }
 
-        return org.springframework.security.core.userdetails.User
+        UserDetails userDetails = org.springframework.security.core.userdetails.User
                 .withUsername(user.getUsername())
                 .password(user.getPassword() != null ? user.getPassword() : "")
                 .authorities(new ArrayList<>()) // Add roles/authorities here if needed
@@ -37,5 +58,47 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .credentialsExpired(false)
                 .disabled(false)
                 .build();
+
+        if (cache.size() >= userCacheSize) {
+            cache.clear();
+        }
+        cache.put(username, new CachedUser(userDetails, System.currentTimeMillis() + userCacheTtlSeconds * 1000));
+        return copyOf(userDetails);
+    }
+
+    /**
+     * Stores a password hash re-encoded with the current settings. Called by
+     * DaoAuthenticationProvider after a successful login when the stored hash
+     * uses a different BCrypt cost.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        evictUser(user);
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
+
+    /**
+     * Drops cached details of a user. Call whenever a user's name, email,
+     * password or authorities change.
+     */
+    public void evictUser(User user) {
+        if (user.getUsername() != null) {
+            cache.remove(user.getUsername());
+        }
+        if (user.getEmail() != null) {
+            cache.remove(user.getEmail());
+        }
+    }
+
+    // ProviderManager erases credentials on the returned instance after login,
+    // so callers must never get the cached object itself.
+    private static UserDetails copyOf(UserDetails userDetails) {
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails).build();
     }
 }
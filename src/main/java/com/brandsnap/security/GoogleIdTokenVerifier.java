@@ -0,0 +1,97 @@
+package com.brandsnap.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies Google Sign-In ID tokens: RS256 signature against the cached
+ * Google keys, issuer, audience (our OAuth client id) and expiry. Claims are
+ * decoded by JJWT's Jackson deserializer.
+ */
+@Component
+public class GoogleIdTokenVerifier {
+
+    @Autowired
+    private GoogleJwksCache jwksCache;
+
+    @Value("${spring.security.oauth2.client.registration.google.client-id:}")
+    private String clientId;
+
+    @Value("${brandsnap.google.issuers:accounts.google.com,https://accounts.google.com}")
+    private String issuers;
+
+    @Value("${brandsnap.google.clock-skew-seconds:60}")
+    private long clockSkewSeconds;
+
+    private Set<String> allowedIssuers;
+
+    private JwtParser parser;
+
+    public record GoogleIdToken(String subject, String email, boolean emailVerified, String name) {
+    }
+
+    @PostConstruct
+    public void init() {
+        allowedIssuers = Arrays.stream(issuers.split(","))
+                .map(String::trim)
+                .filter(issuer -> !issuer.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        parser = Jwts.parserBuilder()
+                .setAllowedClockSkewSeconds(clockSkewSeconds)
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = jwksCache.getKey(header.getKeyId());
+                        if (key == null) {
+                            throw new JwtException("Unknown signing key: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @throws JwtException if the token is malformed, expired, not signed by
+     *                      Google or not issued for this application
+     */
+    public GoogleIdToken verify(String idToken) {
+        if (clientId == null || clientId.isBlank()) {
+            throw new JwtException("Google client id is not configured");
+        }
+        Claims claims = parser.parseClaimsJws(idToken).getBody();
+        if (!allowedIssuers.contains(claims.getIssuer())) {
+            throw new JwtException("Unexpected issuer: " + claims.getIssuer());
+        }
+        if (!clientId.equals(audience(claims))) {
+            throw new JwtException("Token was not issued for this application");
+        }
+        return new GoogleIdToken(
+                claims.getSubject(),
+                claims.get("email", String.class),
+                Boolean.TRUE.equals(claims.get("email_verified", Boolean.class)),
+                claims.get("name", String.class));
+    }
+
+    // Google ID tokens carry a single audience, serialized as a string
+    private static String audience(Claims claims) {
+        Object aud = claims.get(Claims.AUDIENCE);
+        if (aud instanceof java.util.Collection<?> values) {
+            return values.size() == 1 ? String.valueOf(values.iterator().next()) : null;
+        }
+        return aud != null ? aud.toString() : null;
+    }
+}
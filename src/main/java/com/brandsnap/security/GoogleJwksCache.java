@@ -0,0 +1,168 @@
+package com.brandsnap.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory copy of Google's signing keys (JWKS), looked up by {@code kid}.
+ *
+ * Keys are fetched once at startup and then refreshed in the background
+ * shortly before the {@code Cache-Control: max-age} of the last response runs
+ * out, so verifying a token never waits on the network. An unknown kid (Google
+ * rotated keys early) triggers one immediate refresh, at most once per
+ * {@code min-refresh-seconds}.
+ */
+@Component
+public class GoogleJwksCache {
+    private static final Logger logger = LoggerFactory.getLogger(GoogleJwksCache.class);
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    @Value("${brandsnap.google.jwks-url:https://www.googleapis.com/oauth2/v3/certs}")
+    private String jwksUrl;
+
+    // Used when the response has no usable max-age
+    @Value("${brandsnap.google.jwks-default-max-age-seconds:3600}")
+    private long defaultMaxAgeSeconds;
+
+    @Value("${brandsnap.google.jwks-min-refresh-seconds:30}")
+    private long minRefreshSeconds;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+
+    private volatile long lastFetchMillis;
+
+    private HttpClient httpClient;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("google-jwks-refresh").factory());
+        scheduler.execute(this::refreshAndReschedule);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * Returns the key for the given kid, or {@code null} if Google does not
+     * publish one.
+     */
+    public PublicKey getKey(String kid) {
+        if (kid == null) {
+            return null;
+        }
+        PublicKey key = keys.get(kid);
+        if (key == null && System.currentTimeMillis() - lastFetchMillis >= minRefreshSeconds * 1000) {
+            synchronized (this) {
+                if (System.currentTimeMillis() - lastFetchMillis >= minRefreshSeconds * 1000) {
+                    try {
+                        fetch();
+                    } catch (Exception e) {
+                        logger.warn("Could not refresh Google signing keys: {}", e.getMessage());
+                    }
+                }
+            }
+            key = keys.get(kid);
+        }
+        return key;
+    }
+
+    private void refreshAndReschedule() {
+        long delaySeconds;
+        try {
+            long maxAge = fetch();
+            // Refresh a little before the published keys go stale
+            delaySeconds = Math.max(minRefreshSeconds, maxAge * 9 / 10);
+        } catch (Exception e) {
+            logger.warn("Could not fetch Google signing keys from {}: {}", jwksUrl, e.getMessage());
+            delaySeconds = minRefreshSeconds;
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::refreshAndReschedule, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Returns the max-age of the response in seconds
+    private synchronized long fetch() throws IOException, InterruptedException, GeneralSecurityException {
+        lastFetchMillis = System.currentTimeMillis();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(jwksUrl))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("JWKS endpoint returned " + response.statusCode());
+            }
+            JsonNode root = objectMapper.readTree(body);
+            Map<String, PublicKey> parsed = new HashMap<>();
+            for (JsonNode jwk : root.path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText()) || !jwk.hasNonNull("kid")) {
+                    continue;
+                }
+                parsed.put(jwk.get("kid").asText(), rsaKey(jwk.path("n").asText(), jwk.path("e").asText()));
+            }
+            if (parsed.isEmpty()) {
+                throw new IOException("JWKS response contained no RSA keys");
+            }
+            keys = Map.copyOf(parsed);
+            logger.debug("Loaded {} Google signing keys", parsed.size());
+        }
+        return maxAgeSeconds(response.headers().firstValue("Cache-Control").orElse(null));
+    }
+
+    private long maxAgeSeconds(String cacheControl) {
+        if (cacheControl != null) {
+            Matcher matcher = MAX_AGE.matcher(cacheControl);
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        return defaultMaxAgeSeconds;
+    }
+
+    private static PublicKey rsaKey(String modulus, String exponent) throws GeneralSecurityException {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        RSAPublicKeySpec spec = new RSAPublicKeySpec(
+                new BigInteger(1, decoder.decode(modulus)),
+                new BigInteger(1, decoder.decode(exponent)));
+        return KeyFactory.getInstance("RSA").generatePublic(spec);
+    }
+}
@@ -2,14 +2,20 @@ package com.brandsnap.security;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import jakarta.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import com.brandsnap.model.User;
+
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -18,37 +24,109 @@ import io.jsonwebtoken.security.Keys;
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    static final int CLAIMS_FORMAT_VERSION = 1;
+
+    private static final String CLAIM_VERSION = "ver";
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_EMAIL = "email";
+    private static final String CLAIM_PROVIDER = "prv";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_TOKEN_VERSION = "tv";
+
     @Value("${brandsnap.app.jwtSecret}")
     private String jwtSecret;
 
     @Value("${brandsnap.app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
-    public String generateJwtToken(Authentication authentication) {
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
 
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
+    // Decoded once; JwtParser is immutable and thread-safe
+    private Key signingKey;
 
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        try {
+            signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+            parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        } catch (RuntimeException e) {
+            logger.error("Invalid JWT secret, tokens cannot be issued or verified: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Issues a self-contained token: besides the canonical username as
+     * subject it carries everything {@link AuthTokenFilter} needs to build
+     * the principal, so requests never look the user up.
+     */
+    public String generateToken(User user, List<String> roles) {
+        Date now = new Date();
         return Jwts.builder()
-                .setSubject((userPrincipal.getUsername()))
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_VERSION, CLAIMS_FORMAT_VERSION)
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_EMAIL, user.getEmail())
+                .claim(CLAIM_PROVIDER, user.getProvider() != null ? user.getProvider().name() : null)
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + jwtExpirationMs))
                 .signWith(key(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    /**
+     * Whether the token uses the current claims format. Older tokens only
+     * carry a subject (a username or an email) and need a user lookup.
+     */
+    public boolean isSelfContained(Claims claims) {
+        Integer version = claims.get(CLAIM_VERSION, Integer.class);
+        return version != null && version == CLAIMS_FORMAT_VERSION;
     }
 
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+    public UserPrincipal toPrincipal(Claims claims) {
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        return new UserPrincipal(
+                claims.get(CLAIM_USER_ID, Long.class),
+                claims.getSubject(),
+                claims.get(CLAIM_EMAIL, String.class),
+                claims.get(CLAIM_PROVIDER, String.class),
+                roles != null ? roles.stream().map(String::valueOf).toList() : List.of());
     }
 
-    public boolean validateJwtToken(String authToken) {
+    public int getTokenVersion(Claims claims) {
+        Integer version = claims.get(CLAIM_TOKEN_VERSION, Integer.class);
+        return version != null ? version : 0;
+    }
+
+    private Key key() {
+        if (signingKey == null) {
+            throw new IllegalStateException("JWT secret is not configured");
+        }
+        return signingKey;
+    }
+
+    /**
+     * Verifies the token and returns its claims in a single pass. Tokens that
+     * verified before are answered from {@link VerifiedTokenCache} until they
+     * expire.
+     */
+    public Optional<Claims> getVerifiedClaims(String token) {
+        Claims cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (parser == null) {
+            return Optional.empty();
+        }
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            verifiedTokenCache.put(token, claims);
+            return Optional.of(claims);
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -57,17 +135,17 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         }
+        return Optional.empty();
+    }
 
-        return false;
+    public String getUserNameFromJwtToken(String token) {
+        return getVerifiedClaims(token).map(Claims::getSubject).orElse(null);
     }
 
-    public String generateTokenFromEmail(String email) {
-        return Jwts.builder()
-                .setSubject(email)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
-                .compact();
+    public boolean validateJwtToken(String authToken) {
+        return getVerifiedClaims(authToken).isPresent();
     }
 }
@@ -13,6 +13,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 @Component
 public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
@@ -23,6 +26,9 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
@@ -38,11 +44,16 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Generate JWT token
-        String token = jwtUtils.generateTokenFromEmail(email);
+        String token = jwtUtils.generateToken(user, List.of("ROLE_USER"));
+        String refreshToken = refreshTokenService.issue(user.getId());
 
-        // Redirect to frontend with token
+        // Redirect to frontend with token. The refresh token, which is new to
+        // this redirect, goes in the fragment: browsers never send that to a
+        // server, so the long-lived credential stays out of access logs,
+        // proxies and Referer headers.
         String targetUrl = UriComponentsBuilder.fromUriString(frontendUrl + "/oauth2/redirect")
                 .queryParam("token", token)
+                .fragment("refreshToken=" + URLEncoder.encode(refreshToken, StandardCharsets.UTF_8))
                 .build().toUriString();
 
         getRedirectStrategy().sendRedirect(request, response, targetUrl);
@@ -0,0 +1,12 @@
+package com.brandsnap.security;
+
+/**
+ * Thrown when a password cannot be hashed or verified because the hashing
+ * pool is saturated. Controllers map it to {@code 429 Too Many Requests}.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,121 @@
+package com.brandsnap.security;
+
+import com.brandsnap.model.RefreshToken;
+import com.brandsnap.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opaque, rotating refresh tokens. Each refresh consumes the presented token
+ * and returns a new one from the same family; presenting a token that was
+ * already consumed means it leaked, so the whole family is revoked.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final int PURGE_INTERVAL = 1000;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${brandsnap.app.refreshTokenExpirationMs:2592000000}")
+    private long refreshTokenExpirationMs;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final AtomicInteger issuedSincePurge = new AtomicInteger();
+
+    public record Rotation(Long userId, String refreshToken) {
+    }
+
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Exchanges a refresh token for a new one.
+     *
+     * @throws RuntimeException if the token is unknown, expired, revoked or
+     *                          was already used
+     */
+    public Rotation rotate(String refreshToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
+        if (current.isRevoked()) {
+            throw new RuntimeException("Refresh token revoked");
+        }
+        if (current.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Refresh token expired");
+        }
+        if (current.getUsedAt() != null
+                || refreshTokenRepository.markUsed(current.getId(), LocalDateTime.now()) == 0) {
+            logger.warn("Refresh token reuse detected for user {}, revoking token family", current.getUserId());
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            throw new RuntimeException("Refresh token already used");
+        }
+        return new Rotation(current.getUserId(), issue(current.getUserId(), current.getFamilyId()));
+    }
+
+    public void revoke(String refreshToken) {
+        refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId()));
+    }
+
+    public void revokeAllForUser(Long userId) {
+        refreshTokenRepository.revokeAllForUser(userId);
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken row = new RefreshToken();
+        row.setTokenHash(hash(token));
+        row.setUserId(userId);
+        row.setFamilyId(familyId);
+        row.setExpiresAt(LocalDateTime.now().plus(Duration.ofMillis(refreshTokenExpirationMs)));
+        refreshTokenRepository.save(row);
+
+        if (issuedSincePurge.incrementAndGet() >= PURGE_INTERVAL) {
+            issuedSincePurge.set(0);
+            purgeExpired();
+        }
+        return token;
+    }
+
+    private void purgeExpired() {
+        try {
+            int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+            if (purged > 0) {
+                logger.info("Purged {} expired refresh tokens", purged);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not purge refresh tokens: {}", e.getMessage());
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
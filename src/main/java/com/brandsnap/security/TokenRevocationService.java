@@ -0,0 +1,136 @@
+package com.brandsnap.security;
+
+import com.brandsnap.model.RevokedToken;
+import com.brandsnap.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Denylist of revoked access tokens, keyed by jti.
+ *
+ * Lookups go through a bloom filter first: for the common case of a token
+ * that was never revoked it answers "no" without touching the exact set.
+ * Only filter hits are confirmed against the exact set. Revocations are
+ * persisted in revoked_tokens, reloaded on startup and re-read periodically
+ * so that revocations made on other instances take effect here too.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${brandsnap.app.revocation.bloomCapacity:100000}")
+    private int bloomCapacity;
+
+    @Value("${brandsnap.app.revocation.bloomFalsePositiveRate:0.01}")
+    private double bloomFalsePositiveRate;
+
+    @Value("${brandsnap.app.revocation.syncSeconds:30}")
+    private long syncSeconds;
+
+    // jti -> expiry in epoch millis
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+
+    private volatile LocalDateTime lastSync;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(bloomCapacity, bloomFalsePositiveRate);
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(now)) {
+                add(token);
+            }
+            logger.info("Loaded {} revoked tokens", revoked.size());
+        } catch (Exception e) {
+            logger.warn("Could not load revoked tokens: {}", e.getMessage());
+        }
+        lastSync = now;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("token-revocation-sync").factory());
+        scheduler.scheduleWithFixedDelay(this::sync, syncSeconds, syncSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        return revoked.containsKey(jti);
+    }
+
+    public void revoke(String jti, Date expiresAt) {
+        if (jti == null || expiresAt == null || expiresAt.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        RevokedToken token = new RevokedToken();
+        token.setJti(jti);
+        token.setExpiresAt(LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()));
+        token.setRevokedAt(LocalDateTime.now());
+        revokedTokenRepository.save(token);
+        add(token);
+    }
+
+    private void add(RevokedToken token) {
+        long expiresAtMillis = token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        revoked.put(token.getJti(), expiresAtMillis);
+        filter.put(token.getJti());
+    }
+
+    private void sync() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            // Overlap the window slightly to tolerate clock skew between instances
+            LocalDateTime since = lastSync.minusSeconds(syncSeconds);
+            for (RevokedToken token : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(since, now)) {
+                if (!revoked.containsKey(token.getJti())) {
+                    add(token);
+                }
+            }
+            lastSync = now;
+            purgeExpired(now);
+        } catch (Exception e) {
+            logger.warn("Could not sync revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    // Bloom filters cannot forget, so expired entries are dropped by rebuilding it
+    private void purgeExpired(LocalDateTime now) {
+        long nowMillis = Instant.now().toEpochMilli();
+        int before = revoked.size();
+        revoked.values().removeIf(expiresAt -> expiresAt <= nowMillis);
+        if (revoked.size() < before) {
+            BloomFilter rebuilt = new BloomFilter(Math.max(bloomCapacity, revoked.size() * 2), bloomFalsePositiveRate);
+            revoked.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+            // Revocations added while rebuilding may have missed the new filter
+            revoked.keySet().forEach(rebuilt::put);
+        }
+        revokedTokenRepository.deleteExpired(now);
+    }
+}
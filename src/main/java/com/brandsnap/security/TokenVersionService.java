@@ -0,0 +1,57 @@
+package com.brandsnap.security;
+
+import com.brandsnap.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user token version used to invalidate every token of a user at once.
+ * Tokens carry the version they were issued with; bumping the stored version
+ * makes all older tokens fail {@link #isCurrent}.
+ *
+ * Versions are cached and re-read at most once per refresh interval, so the
+ * check costs no query on the request path. Other instances pick up a bump
+ * within that interval.
+ */
+@Service
+public class TokenVersionService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${brandsnap.app.tokenVersionRefreshSeconds:60}")
+    private long refreshSeconds;
+
+    private record CachedVersion(int version, long loadedAtMillis) {
+    }
+
+    private final Map<Long, CachedVersion> versions = new ConcurrentHashMap<>();
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        long now = System.currentTimeMillis();
+        CachedVersion cached = versions.get(userId);
+        if (cached == null || now - cached.loadedAtMillis() > refreshSeconds * 1000) {
+            Integer version = userRepository.findTokenVersionById(userId).orElse(null);
+            if (version == null) {
+                // User no longer exists
+                versions.remove(userId);
+                return false;
+            }
+            cached = new CachedVersion(version, now);
+            versions.put(userId, cached);
+        }
+        return tokenVersion == cached.version();
+    }
+
+    /**
+     * Invalidates every token issued to the user so far.
+     */
+    public void revokeAllTokens(Long userId) {
+        userRepository.incrementTokenVersion(userId);
+        versions.remove(userId);
+    }
+}
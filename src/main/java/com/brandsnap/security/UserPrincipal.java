@@ -0,0 +1,59 @@
+package com.brandsnap.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authenticated user rebuilt from the claims of a self-contained JWT, without
+ * a database lookup.
+ */
+public class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String provider;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(Long id, String username, String email, String provider, List<String> roles) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.provider = provider;
+        this.authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+                .toList();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    // Tokens never carry the password hash
+    @Override
+    public String getPassword() {
+        return "";
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+}
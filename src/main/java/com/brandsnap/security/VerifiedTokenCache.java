@@ -0,0 +1,65 @@
+package com.brandsnap.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claims of tokens whose signature has already been verified, kept until the
+ * token expires. Lets {@link AuthTokenFilter} skip HMAC verification and JSON
+ * parsing for tokens it has seen before.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    @Value("${brandsnap.app.jwtCacheSize:10000}")
+    private int maxEntries;
+
+    private record Entry(Claims claims, long expiresAtMillis) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public Claims get(String token) {
+        Entry entry = entries.get(token);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(token, entry);
+            return null;
+        }
+        return entry.claims();
+    }
+
+    public void put(String token, Claims claims) {
+        if (claims.getExpiration() == null) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            purge();
+        }
+        entries.put(token, new Entry(claims, claims.getExpiration().getTime()));
+    }
+
+    public void remove(String token) {
+        entries.remove(token);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    // Drops expired tokens; if the cache is still full every entry goes, since
+    // a miss only costs one signature check.
+    private void purge() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+}
@@ -1,161 +1,277 @@
 package com.brandsnap.service;
 
+import com.brandsnap.generation.GenerationCache;
+import com.brandsnap.generation.GenerationCoalescer;
+import com.brandsnap.generation.GeneratedImage;
+import com.brandsnap.generation.GenerationFailedException;
+import com.brandsnap.generation.GenerationRejectedException;
+import com.brandsnap.generation.ImageProviderRouter;
+import com.brandsnap.generation.InputImage;
+import com.brandsnap.generation.InputImageNormalizer;
+import com.brandsnap.generation.ProviderException;
+import com.brandsnap.generation.ProviderResiliencePolicy;
+import com.brandsnap.generation.StoredInputImage;
 import com.brandsnap.model.Asset;
 import com.brandsnap.model.Campaign;
+import com.brandsnap.payload.response.AssetPage;
+import com.brandsnap.payload.response.AssetSummary;
 import com.brandsnap.repository.AssetRepository;
 import com.brandsnap.repository.CampaignRepository;
+import com.brandsnap.storage.AssetStorage;
+import com.brandsnap.storage.ImageDimensions;
+import com.brandsnap.storage.OrphanedObjectCleaner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Optional;
 
 @Service
 public class AssetService {
+    private static final Logger logger = LoggerFactory.getLogger(AssetService.class);
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private AssetRepository assetRepository;
 
     @Autowired
     private CampaignRepository campaignRepository;
 
-    @Value("${nano.banana.api.key}")
-    private String apiKey;
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Autowired
+    private OrphanedObjectCleaner orphanedObjectCleaner;
+
+    @Autowired
+    private GenerationCache generationCache;
+
+    @Autowired
+    private GenerationCoalescer generationCoalescer;
+
+    @Autowired
+    private ProviderResiliencePolicy resiliencePolicy;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private ImageProviderRouter providerRouter;
+
+    @Autowired
+    private InputImageNormalizer inputImageNormalizer;
 
     public Asset generateAsset(Long campaignId, String prompt, String inputImage) {
+        return generateAsset(campaignId, prompt, inputImage, false);
+    }
+
+    public Asset generateAsset(Long campaignId, String prompt, String inputImage, boolean fresh) {
+        return generateAsset(campaignId, prompt, inputImage, fresh, null);
+    }
+
+    /**
+     * Identical concurrent requests share one provider call and get the same
+     * asset back; see {@link GenerationCoalescer}.
+     *
+     * @param fresh          skip the generation cache and always call the provider
+     * @param idempotencyKey caller-scoped Idempotency-Key header value, or null
+     */
+    public Asset generateAsset(Long campaignId, String prompt, String inputImage, boolean fresh,
+            String idempotencyKey) {
+        // Input image is optional (base64 or data URL)
+        InputImage image = inputImage != null && !inputImage.isEmpty() ? InputImage.ofBase64(inputImage) : null;
+        return generateAsset(campaignId, prompt, image, fresh, idempotencyKey);
+    }
+
+    /**
+     * Same as the base64 variant, for images that are already wrapped, such
+     * as multipart uploads. The caller stays responsible for releasing the
+     * image.
+     */
+    public Asset generateAsset(Long campaignId, String prompt, InputImage inputImage, boolean fresh,
+            String idempotencyKey) {
+        // Normalized before keying, so images that shrink to the same bytes share
+        InputImage image = inputImageNormalizer.normalize(inputImage);
+        String flightKey;
+        try {
+            flightKey = generationCoalescer.flightKey(campaignId, prompt, image);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid input image", e);
+        }
+        return generationCoalescer.execute(flightKey, idempotencyKey,
+                () -> createAsset(campaignId, prompt, image, fresh));
+    }
+
+    private Asset createAsset(Long campaignId, String prompt, InputImage inputImage, boolean fresh) {
         Campaign campaign = campaignRepository.findById(campaignId)
                 .orElseThrow(() -> new RuntimeException("Campaign not found"));
 
         // Call Nano Banana API
-        String imageData = callNanoBananaApi(prompt, inputImage);
+        GeneratedImage image = generateImage(prompt, inputImage, fresh);
 
         Asset asset = new Asset();
         asset.setCampaign(campaign);
         asset.setPrompt(prompt);
-        asset.setImageData(imageData);
+        applyImage(asset, image);
 
         return assetRepository.save(asset);
     }
 
-    private String callNanoBananaApi(String prompt, String inputImage) {
+    /**
+     * Generates an image and returns an unsaved asset for it, for callers that
+     * persist assets in bulk.
+     */
+    public Asset prepareAsset(Campaign campaign, String prompt, String inputImage, boolean fresh) {
+        InputImage image = inputImage != null && !inputImage.isEmpty()
+                ? inputImageNormalizer.normalize(InputImage.ofBase64(inputImage))
+                : null;
+
+        Asset asset = new Asset();
+        asset.setCampaign(campaign);
+        asset.setPrompt(prompt);
+        applyImage(asset, generateImage(prompt, image, fresh));
+        return asset;
+    }
+
+    private void applyImage(Asset asset, GeneratedImage image) {
+        // A cache hit or identical bytes may reuse an object released earlier
+        if (!orphanedObjectCleaner.retain(image.stored().key())) {
+            throw new GenerationFailedException("Generated image was removed before it could be saved", null);
+        }
+        asset.setStorageKey(image.stored().key());
+        asset.setMimeType(image.mimeType());
+        asset.setByteSize(image.stored().size());
+        asset.setWidth(null);
+        asset.setHeight(null);
+        try (InputStream in = assetStorage.open(image.stored().key())) {
+            ImageDimensions.read(in).ifPresent(dimensions -> {
+                asset.setWidth(dimensions.width());
+                asset.setHeight(dimensions.height());
+            });
+        } catch (IOException e) {
+            logger.warn("Could not read image dimensions: {}", e.getMessage());
+        }
+    }
+
+    // Objects are shared between assets with identical images and with
+    // reference images; the cleaner deletes one only after a grace period
+    // in which nothing has come to point at it.
+    private void releaseImage(String storageKey) {
+        if (storageKey != null) {
+            orphanedObjectCleaner.submit(List.of(storageKey));
+        }
+    }
+
+    /**
+     * @throws GenerationRejectedException if the provider is saturated or
+     *                                     its circuit breaker is open
+     * @throws GenerationFailedException   if the provider could not produce
+     *                                     an image
+     */
+    private GeneratedImage generateImage(String prompt, InputImage image, boolean fresh) {
+        if (!generationCache.isEnabled()) {
+            return callImageProvider(prompt, image);
+        }
+        String cacheKey;
         try {
-            String apiUrl = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.5-flash-image:generateContent";
-
-            // Build request body
-            Map<String, Object> requestBody = new HashMap<>();
-            List<Map<String, Object>> contents = new java.util.ArrayList<>();
-            Map<String, Object> content = new HashMap<>();
-            List<Map<String, Object>> parts = new java.util.ArrayList<>();
-
-            // Add input image if provided (should be base64 encoded)
-            if (inputImage != null && !inputImage.isEmpty()) {
-                Map<String, Object> imagePart = new HashMap<>();
-                Map<String, Object> inlineData = new HashMap<>();
-
-                // Extract base64 data if it's a data URL
-                String base64Data = inputImage;
-                if (inputImage.startsWith("data:")) {
-                    int commaIndex = inputImage.indexOf(",");
-                    if (commaIndex != -1) {
-                        base64Data = inputImage.substring(commaIndex + 1);
-                    }
-                }
-
-                inlineData.put("mime_type", "image/jpeg");
-                inlineData.put("data", base64Data);
-                imagePart.put("inline_data", inlineData);
-                parts.add(imagePart);
+            cacheKey = generationCache.key(providerRouter.getModelKey(), prompt, image);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid input image", e);
+        }
+        if (!fresh) {
+            Optional<GeneratedImage> cached = generationCache.get(cacheKey);
+            if (cached.isPresent()) {
+                return cached.get();
             }
+        }
+        GeneratedImage generated = callImageProvider(prompt, image);
+        generationCache.put(cacheKey, generated);
+        return generated;
+    }
 
-            // Add text prompt
-            Map<String, Object> textPart = new HashMap<>();
-            textPart.put("text", prompt);
-            parts.add(textPart);
-
-            content.put("parts", parts);
-            contents.add(content);
-            requestBody.put("contents", contents);
-            System.out.println(requestBody);
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-goog-api-key", apiKey);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-
-            // Make API call
-            ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl, request, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                // Extract image data from response
-                Map<String, Object> responseBody = response.getBody();
-                // print response body
-                System.out.println(responseBody);
-                List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
-
-                if (candidates != null && !candidates.isEmpty()) {
-                    Map<String, Object> candidate = candidates.get(0);
-                    Map<String, Object> contentResponse = (Map<String, Object>) candidate.get("content");
-                    List<Map<String, Object>> responseParts = (List<Map<String, Object>>) contentResponse.get("parts");
-
-                    if (responseParts != null && !responseParts.isEmpty()) {
-                        // Look for the part with inlineData (image)
-                        for (Map<String, Object> responsePart : responseParts) {
-                            Map<String, Object> responseInlineData = (Map<String, Object>) responsePart
-                                    .get("inlineData");
-
-                            if (responseInlineData != null) {
-                                String base64Image = (String) responseInlineData.get("data");
-                                String mimeType = (String) responseInlineData.get("mimeType");
-
-                                // Return as data URL for display
-                                return "data:" + mimeType + ";base64," + base64Image;
-                            }
-                        }
-                    }
-                }
+    // Provider routing and failover inside retries, hedging and circuit
+    // breaking; see ImageProviderRouter and ProviderResiliencePolicy
+    private GeneratedImage callImageProvider(String prompt, InputImage image) {
+        try {
+            return resiliencePolicy.execute(() -> providerRouter.generate(prompt, image), this::discardHedgedImage);
+        } catch (GenerationFailedException e) {
+            // A provider can drop an uploaded file before its handle expires, which
+            // fails every request using it; evict the handles and send the bytes once.
+            // Other refusals, such as a blocked prompt, would fail inline as well.
+            if (image instanceof StoredInputImage stored && stored.hasProviderFiles()
+                    && e.getCause() instanceof ProviderException cause && cause.isFileRejected()) {
+                logger.warn("Provider refused a request with uploaded file handles ({}), retrying inline",
+                        cause.getMessage());
+                InputImage inline = stored.rejectProviderFiles();
+                return resiliencePolicy.execute(() -> providerRouter.generate(prompt, inline),
+                        this::discardHedgedImage);
             }
+            throw e;
+        }
+    }
 
-            // Fallback to placeholder if API call fails
-            System.err.println("No image found in API response, using placeholder");
-            // Return a simple base64 encoded placeholder image (1x1 gray pixel)
-            return "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+    // A hedged attempt that lost still stored its image; drop it unless the
+    // winner produced the very same object or it was already stored before.
+    private void discardHedgedImage(GeneratedImage loser, GeneratedImage winner) {
+        String key = loser.stored().key();
+        if (!loser.stored().existing() && !key.equals(winner.stored().key())) {
+            releaseImage(key);
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error calling Gemini API: " + e.getMessage());
-            e.printStackTrace();
-            // Return placeholder on error (1x1 gray pixel)
-            return "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+    public AssetPage getAssetPage(Long campaignId, Long cursor, int limit) {
+        if (!campaignRepository.existsById(campaignId)) {
+            throw new RuntimeException("Campaign not found");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page follows
+        List<AssetSummary> rows = assetRepository.findSummaries(campaignId, cursor != null ? cursor : 0L,
+                Limit.of(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new AssetPage(rows, null);
         }
+        List<AssetSummary> items = rows.subList(0, pageSize);
+        return new AssetPage(List.copyOf(items), items.get(pageSize - 1).id());
     }
 
-    public List<Asset> getAssetsByCampaign(Long campaignId) {
-        Campaign campaign = campaignRepository.findById(campaignId)
-                .orElseThrow(() -> new RuntimeException("Campaign not found"));
-        return assetRepository.findByCampaign(campaign);
+    public Asset getAssetById(Long assetId) {
+        return assetRepository.findById(assetId)
+                .orElseThrow(() -> new RuntimeException("Asset not found"));
+    }
+
+    public Optional<String> findMimeTypeByStorageKey(String storageKey) {
+        return assetRepository.findFirstByStorageKey(storageKey).map(Asset::getMimeType);
     }
 
     public Asset updateAsset(Long assetId, String prompt) {
+        return updateAsset(assetId, prompt, false);
+    }
+
+    public Asset updateAsset(Long assetId, String prompt, boolean fresh) {
         Asset asset = assetRepository.findById(assetId)
                 .orElseThrow(() -> new RuntimeException("Asset not found"));
 
         // Re-generate or edit
-        String imageData = callNanoBananaApi(prompt, null);
+        GeneratedImage image = generateImage(prompt, null, fresh);
+        String previousKey = asset.getStorageKey();
         asset.setPrompt(prompt);
-        asset.setImageData(imageData);
+        applyImage(asset, image);
 
-        return assetRepository.save(asset);
+        Asset saved = assetRepository.save(asset);
+        if (previousKey != null && !previousKey.equals(saved.getStorageKey())) {
+            releaseImage(previousKey);
+        }
+        return saved;
     }
 
     public void deleteAsset(Long assetId) {
-        assetRepository.deleteById(assetId);
+        Asset asset = assetRepository.findById(assetId).orElse(null);
+        if (asset == null) {
+            return;
+        }
+        assetRepository.delete(asset);
+        releaseImage(asset.getStorageKey());
     }
 }
@@ -0,0 +1,200 @@
+package com.brandsnap.service;
+
+import com.brandsnap.model.Asset;
+import com.brandsnap.model.Campaign;
+import com.brandsnap.payload.request.BatchGenerationRequest;
+import com.brandsnap.repository.AssetRepository;
+import com.brandsnap.repository.CampaignRepository;
+import com.brandsnap.storage.OrphanedObjectCleaner;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Generates many variants for one campaign in a single request.
+ *
+ * Items are generated on virtual threads, at most {@code parallelism} at a
+ * time. Finished items are written with JDBC batch inserts: the writer takes
+ * whatever has completed so far (up to {@code flush-size}) and inserts it in
+ * one statement, then streams those assets to the client as SSE events.
+ */
+@Service
+public class BatchGenerationService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchGenerationService.class);
+
+    @Autowired
+    private AssetService assetService;
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private CampaignRepository campaignRepository;
+
+    @Autowired
+    private OrphanedObjectCleaner orphanedObjectCleaner;
+
+    @Value("${brandsnap.generation.batch.parallelism:4}")
+    private int parallelism;
+
+    @Value("${brandsnap.generation.batch.max-items:50}")
+    private int maxItems;
+
+    @Value("${brandsnap.generation.batch.flush-size:10}")
+    private int flushSize;
+
+    @Value("${brandsnap.generation.batch.timeout-ms:600000}")
+    private long timeoutMs;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("batch-generation-", 0).factory());
+
+    private record Completed(int index, String prompt, Asset asset, String error) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts a batch from either a list of prompts or one prompt with a
+     * number of variants.
+     *
+     * @throws IllegalArgumentException if the batch is empty or too large
+     */
+    public SseEmitter generate(Long campaignId, BatchGenerationRequest request, boolean fresh) {
+        if (request.getPrompts() != null && !request.getPrompts().isEmpty()) {
+            return generate(campaignId, request.getPrompts(), request.getInputImage(), fresh);
+        }
+        if (request.getPrompt() == null || request.getPrompt().isBlank()) {
+            throw new IllegalArgumentException("At least one prompt is required");
+        }
+        // Checked before the prompt list is built, so a huge count cannot exhaust the heap
+        int variants = request.getVariants() != null ? request.getVariants() : 1;
+        if (variants < 1 || variants > maxItems) {
+            throw new IllegalArgumentException("variants must be between 1 and " + maxItems);
+        }
+        // Variants share prompt and input image, so they share one generation cache
+        // key; without fresh every variant after the first would be a cache hit
+        return generate(campaignId, Collections.nCopies(variants, request.getPrompt()), request.getInputImage(),
+                fresh || variants > 1);
+    }
+
+    public SseEmitter generate(Long campaignId, List<String> prompts, String inputImage, boolean fresh) {
+        if (prompts.isEmpty()) {
+            throw new IllegalArgumentException("At least one prompt is required");
+        }
+        if (prompts.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " assets can be generated per batch");
+        }
+        Campaign campaign = campaignRepository.findById(campaignId)
+                .orElseThrow(() -> new RuntimeException("Campaign not found"));
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        executor.submit(() -> run(campaign, List.copyOf(prompts), inputImage, fresh, emitter));
+        return emitter;
+    }
+
+    private void run(Campaign campaign, List<String> prompts, String inputImage, boolean fresh, SseEmitter emitter) {
+        BlockingQueue<Completed> completed = new LinkedBlockingQueue<>();
+        Semaphore permits = new Semaphore(parallelism);
+
+        for (int i = 0; i < prompts.size(); i++) {
+            int index = i;
+            String prompt = prompts.get(i);
+            executor.submit(() -> {
+                try {
+                    permits.acquire();
+                    try {
+                        Asset asset = assetService.prepareAsset(campaign, prompt, inputImage, fresh);
+                        completed.add(new Completed(index, prompt, asset, null));
+                    } finally {
+                        permits.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    completed.add(new Completed(index, prompt, null, "Generation was cancelled"));
+                } catch (Exception e) {
+                    completed.add(new Completed(index, prompt, null, e.getMessage()));
+                }
+            });
+        }
+
+        int remaining = prompts.size();
+        int succeeded = 0;
+        int failed = 0;
+        boolean clientConnected = true;
+        List<Completed> batch = new ArrayList<>(flushSize);
+        try {
+            while (remaining > 0) {
+                batch.clear();
+                batch.add(completed.take());
+                completed.drainTo(batch, flushSize - 1);
+                remaining -= batch.size();
+
+                List<Asset> assets = batch.stream()
+                        .filter(item -> item.asset() != null)
+                        .map(Completed::asset)
+                        .toList();
+                String insertError = null;
+                try {
+                    assetRepository.insertAll(assets);
+                } catch (Exception e) {
+                    logger.error("Could not insert batch of {} assets: {}", assets.size(), e.getMessage());
+                    insertError = "Could not save asset";
+                    // Nothing points at the images stored for this chunk
+                    orphanedObjectCleaner.submit(assets.stream().map(Asset::getStorageKey).toList());
+                }
+
+                // Keep generating and saving if the client goes away; the work is already paid for
+                for (Completed item : batch) {
+                    String error = item.error() != null ? item.error() : insertError;
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("index", item.index());
+                    event.put("prompt", item.prompt());
+                    if (error == null) {
+                        succeeded++;
+                        event.put("asset", item.asset());
+                        clientConnected = clientConnected && send(emitter, "asset", event);
+                    } else {
+                        failed++;
+                        event.put("message", error);
+                        clientConnected = clientConnected && send(emitter, "error", event);
+                    }
+                }
+            }
+            if (clientConnected) {
+                send(emitter, "done", Map.of("succeeded", succeeded, "failed", failed));
+                emitter.complete();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.completeWithError(e);
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
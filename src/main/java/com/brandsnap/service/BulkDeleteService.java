@@ -0,0 +1,142 @@
+package com.brandsnap.service;
+
+import com.brandsnap.storage.OrphanedObjectCleaner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deletes projects and campaigns with set-based SQL instead of through the
+ * JPA cascade, which loads every child row into the persistence context and
+ * removes them one at a time.
+ *
+ * Assets go in chunks of {@code brandsnap.deletes.chunk-size} rows, each
+ * its own short statement, so neither memory nor lock time grows with the
+ * size of a campaign. A delete that fails half way leaves the remaining rows
+ * in place and can simply be repeated. Stored images of the deleted rows
+ * are handed to {@link OrphanedObjectCleaner} chunk by chunk.
+ */
+@Service
+public class BulkDeleteService {
+    private static final Logger logger = LoggerFactory.getLogger(BulkDeleteService.class);
+    private static final int MAX_DELETE_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrphanedObjectCleaner orphanedObjectCleaner;
+
+    @Value("${brandsnap.deletes.chunk-size:500}")
+    private int chunkSize;
+
+    private record AssetRow(long id, String storageKey) {
+    }
+
+    public void deleteProject(Long projectId) {
+        long start = System.nanoTime();
+        long campaigns = 0;
+        long assets = 0;
+        for (int attempt = 1; ; attempt++) {
+            // Campaigns created while the project is going away are swept too
+            List<Long> campaignIds;
+            while (!(campaignIds = jdbcTemplate.queryForList("SELECT id FROM campaigns WHERE project_id = ?",
+                    Long.class, projectId)).isEmpty()) {
+                for (Long campaignId : campaignIds) {
+                    assets += deleteCampaignRows(campaignId);
+                    campaigns++;
+                }
+            }
+            deleteReferenceImages(projectId);
+            try {
+                jdbcTemplate.update("DELETE FROM projects WHERE id = ?", projectId);
+                break;
+            } catch (DataIntegrityViolationException e) {
+                // A campaign or reference was added after the last sweep
+                if (attempt >= MAX_DELETE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        logger.info("Deleted project {} with {} campaigns and {} assets in {} ms", projectId, campaigns, assets,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void deleteCampaign(Long campaignId) {
+        long start = System.nanoTime();
+        long assets = deleteCampaignRows(campaignId);
+        logger.info("Deleted campaign {} with {} assets in {} ms", campaignId, assets,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long deleteCampaignRows(Long campaignId) {
+        long deleted = sweepAssets(campaignId);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.update("DELETE FROM campaigns WHERE id = ?", campaignId);
+                return deleted;
+            } catch (DataIntegrityViolationException e) {
+                // An asset was generated into the campaign after the last sweep
+                if (attempt >= MAX_DELETE_ATTEMPTS) {
+                    throw e;
+                }
+                deleted += sweepAssets(campaignId);
+            }
+        }
+    }
+
+    // Deletes chunks until the campaign has no assets left. Chunks walk the
+    // campaign's index in id order, so a row inserted meanwhile is only seen
+    // if it lands before the query that comes back empty; the caller retries
+    // the campaign delete for anything that slips in after that. Rows are
+    // deleted by id, so every deleted row's image reaches the cleaner.
+    private long sweepAssets(Long campaignId) {
+        long deleted = 0;
+        while (true) {
+            List<AssetRow> rows = jdbcTemplate.query(
+                    "SELECT id, storage_key FROM assets WHERE campaign_id = ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new AssetRow(rs.getLong("id"), rs.getString("storage_key")),
+                    campaignId, chunkSize);
+            if (rows.isEmpty()) {
+                return deleted;
+            }
+            deleted += jdbcTemplate.update("DELETE FROM assets WHERE id IN (" + placeholders(rows.size()) + ")",
+                    rows.stream().map(AssetRow::id).toArray());
+            orphanedObjectCleaner.submit(rows.stream().map(AssetRow::storageKey).toList());
+        }
+    }
+
+    // A project holds a handful of references, so these go in one statement
+    // each. Deleting by the ids read keeps the keys handed to the cleaner in
+    // step with the rows actually removed.
+    private void deleteReferenceImages(Long projectId) {
+        List<Long> ids = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, storage_key, normalized_key FROM reference_images WHERE project_id = ?",
+                rs -> {
+                    ids.add(rs.getLong("id"));
+                    keys.add(rs.getString("storage_key"));
+                    keys.add(rs.getString("normalized_key"));
+                }, projectId);
+        if (ids.isEmpty()) {
+            return;
+        }
+        String in = placeholders(ids.size());
+        jdbcTemplate.update("DELETE FROM reference_image_files WHERE reference_image_id IN (" + in + ")",
+                ids.toArray());
+        jdbcTemplate.update("DELETE FROM reference_images WHERE id IN (" + in + ")", ids.toArray());
+        orphanedObjectCleaner.submit(keys);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
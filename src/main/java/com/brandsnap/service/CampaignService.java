@@ -2,11 +2,14 @@ package com.brandsnap.service;
 
 import com.brandsnap.model.Campaign;
 import com.brandsnap.model.Project;
+import com.brandsnap.repository.AssetRepository;
 import com.brandsnap.repository.CampaignRepository;
 import com.brandsnap.repository.ProjectRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class CampaignService {
@@ -16,27 +19,52 @@ public class CampaignService {
     @Autowired
     private ProjectRepository projectRepository;
 
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private BulkDeleteService bulkDeleteService;
+
     public Campaign createCampaign(Campaign campaign, Long projectId) {
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Project not found"));
         campaign.setProject(project);
-        return campaignRepository.save(campaign);
+        Campaign saved = campaignRepository.save(campaign);
+        saved.setAssetCount(0L);
+        return saved;
     }
 
     public List<Campaign> getCampaignsByProject(Long projectId) {
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Project not found"));
-        return campaignRepository.findByProject(project);
+        List<Campaign> campaigns = campaignRepository.findByProject(project);
+        if (campaigns.isEmpty()) {
+            return campaigns;
+        }
+
+        // One grouped query for the whole listing instead of one per campaign
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : assetRepository.countByCampaignIds(campaigns.stream().map(Campaign::getId).toList())) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        for (Campaign campaign : campaigns) {
+            campaign.setAssetCount(counts.getOrDefault(campaign.getId(), 0L));
+        }
+        return campaigns;
     }
 
     public Campaign getCampaignById(Long id) {
-        return campaignRepository.findById(id)
+        Campaign campaign = campaignRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Campaign not found"));
+        campaign.setAssetCount(assetRepository.countByCampaignId(id));
+        return campaign;
     }
 
+    // Set-based, so assets are never loaded; see BulkDeleteService
     public void deleteCampaign(Long id) {
-        Campaign campaign = campaignRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Campaign not found"));
-        campaignRepository.delete(campaign);
+        if (!campaignRepository.existsById(id)) {
+            throw new RuntimeException("Campaign not found");
+        }
+        bulkDeleteService.deleteCampaign(id);
     }
 }
@@ -16,6 +16,9 @@ public class ProjectService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BulkDeleteService bulkDeleteService;
+
     public Project createProject(Project project, Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -34,9 +37,11 @@ public class ProjectService {
                 .orElseThrow(() -> new RuntimeException("Project not found"));
     }
 
+    // Set-based, so campaigns and assets are never loaded; see BulkDeleteService
     public void deleteProject(Long id) {
-        Project project = projectRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Project not found"));
-        projectRepository.delete(project);
+        if (!projectRepository.existsById(id)) {
+            throw new RuntimeException("Project not found");
+        }
+        bulkDeleteService.deleteProject(id);
     }
 }
@@ -0,0 +1,346 @@
+package com.brandsnap.service;
+
+import com.brandsnap.generation.InputImageUploads;
+import com.brandsnap.generation.ProviderFileStore;
+import com.brandsnap.generation.SpooledInputImage;
+import com.brandsnap.generation.StoredInputImage;
+import com.brandsnap.model.Campaign;
+import com.brandsnap.model.Project;
+import com.brandsnap.model.ProviderFileHandle;
+import com.brandsnap.model.ReferenceImage;
+import com.brandsnap.repository.CampaignRepository;
+import com.brandsnap.repository.ProjectRepository;
+import com.brandsnap.repository.ReferenceImageRepository;
+import com.brandsnap.storage.AssetStorage;
+import com.brandsnap.storage.ImageDimensions;
+import com.brandsnap.storage.ImageVariantService;
+import com.brandsnap.storage.OrphanedObjectCleaner;
+import com.brandsnap.storage.StoredObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-project library of brand reference images (logos, product shots).
+ *
+ * An image is uploaded once and stored once: uploads are deduplicated per
+ * project by content hash, and the bytes live in the content-addressed
+ * {@link AssetStorage} shared with generated assets. Each reference keeps a
+ * size-capped copy that is what providers get to see, and where a provider
+ * has a file API that copy is uploaded there and then referenced by handle
+ * until the handle expires.
+ */
+@Service
+public class ReferenceImageService {
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceImageService.class);
+
+    public record Upload(ReferenceImage image, boolean created) {
+    }
+
+    @Autowired
+    private ReferenceImageRepository referenceImageRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private CampaignRepository campaignRepository;
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Autowired
+    private OrphanedObjectCleaner orphanedObjectCleaner;
+
+    @Autowired
+    private InputImageUploads inputImageUploads;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired(required = false)
+    private List<ProviderFileStore> fileStores = List.of();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Striped per reference image id
+    private final ReentrantLock[] refreshLocks = new ReentrantLock[64];
+
+    {
+        for (int i = 0; i < refreshLocks.length; i++) {
+            refreshLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Value("${brandsnap.references.max-dimension:1536}")
+    private int maxDimension;
+
+    @Value("${brandsnap.references.provider-files.enabled:true}")
+    private boolean providerFilesEnabled;
+
+    @Value("${brandsnap.references.provider-files.refresh-margin-minutes:60}")
+    private long refreshMarginMinutes;
+
+    /**
+     * Adds an image to the project's library, or returns the existing entry
+     * if the project already holds the same bytes.
+     *
+     * @throws IllegalArgumentException if the upload is not a usable image
+     */
+    public Upload upload(Long projectId, MultipartFile file, String name) throws IOException {
+        Project project = projectRepository.findById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found"));
+
+        SpooledInputImage upload = inputImageUploads.spool(file);
+        StoredObject stored;
+        try {
+            try (InputStream in = upload.openStream()) {
+                stored = assetStorage.store(in);
+            }
+            if (!orphanedObjectCleaner.retain(stored.key())) {
+                // Same bytes as an orphan deleted just after store() found it
+                try (InputStream in = upload.openStream()) {
+                    stored = assetStorage.store(in);
+                }
+            }
+        } finally {
+            upload.release();
+        }
+
+        Optional<ReferenceImage> existing = referenceImageRepository.findByProjectIdAndStorageKey(projectId,
+                stored.key());
+        if (existing.isPresent()) {
+            return new Upload(existing.get(), false);
+        }
+
+        ReferenceImage image = new ReferenceImage();
+        image.setProject(project);
+        image.setName(name != null && !name.isBlank() ? name : file.getOriginalFilename());
+        image.setStorageKey(stored.key());
+        image.setMimeType(upload.mimeType());
+        image.setByteSize(stored.size());
+        Optional<ImageDimensions> dimensions;
+        try (InputStream in = assetStorage.open(stored.key())) {
+            dimensions = ImageDimensions.read(in);
+        }
+        dimensions.ifPresent(d -> {
+            image.setWidth(d.width());
+            image.setHeight(d.height());
+        });
+        normalize(image, dimensions.orElse(null));
+
+        ReferenceImage saved;
+        try {
+            saved = referenceImageRepository.save(image);
+        } catch (DataIntegrityViolationException e) {
+            // Same image uploaded concurrently; the other request created the row
+            return referenceImageRepository.findByProjectIdAndStorageKey(projectId, stored.key())
+                    .map(winner -> {
+                        releaseObject(image.getNormalizedKey());
+                        return new Upload(winner, false);
+                    })
+                    .orElseThrow(() -> e);
+        }
+        // Get provider copies in place now rather than on the first generation
+        refreshProviderFiles(saved);
+        return new Upload(saved, true);
+    }
+
+    public List<ReferenceImage> getReferenceImages(Long projectId) {
+        if (!projectRepository.existsById(projectId)) {
+            throw new RuntimeException("Project not found");
+        }
+        return referenceImageRepository.findByProjectIdOrderByIdDesc(projectId);
+    }
+
+    public ReferenceImage getReferenceImage(Long projectId, Long referenceImageId) {
+        return referenceImageRepository.findByIdAndProjectId(referenceImageId, projectId)
+                .orElseThrow(() -> new RuntimeException("Reference image not found"));
+    }
+
+    public void deleteReferenceImage(Long projectId, Long referenceImageId) {
+        ReferenceImage image = referenceImageRepository.findByIdAndProjectId(referenceImageId, projectId)
+                .orElse(null);
+        if (image == null) {
+            return;
+        }
+        referenceImageRepository.delete(image);
+        releaseObject(image.getStorageKey());
+        releaseObject(image.getNormalizedKey());
+    }
+
+    /**
+     * Input image for a generation in {@code campaignId}, backed by the
+     * reference's size-capped copy. Only references of the campaign's own
+     * project can be used.
+     */
+    public StoredInputImage inputFor(Long campaignId, Long referenceImageId) {
+        Campaign campaign = campaignRepository.findById(campaignId)
+                .orElseThrow(() -> new RuntimeException("Campaign not found"));
+        ReferenceImage image = getReferenceImage(campaign.getProject().getId(), referenceImageId);
+
+        Map<String, String> fileUris = new HashMap<>();
+        refreshProviderFiles(image).forEach((providerId, handle) -> fileUris.put(providerId, handle.getUri()));
+        Long id = image.getId();
+        return new StoredInputImage(assetStorage, image.getNormalizedKey(), image.getNormalizedMimeType(),
+                image.getNormalizedByteSize(), fileUris, () -> evictProviderFiles(id));
+    }
+
+    /**
+     * Forgets every provider handle of a reference image, after a provider
+     * refused a request that used one (e.g. the file was deleted early).
+     * The next generation uploads it again.
+     */
+    public void evictProviderFiles(Long referenceImageId) {
+        ReentrantLock lock = lockFor(referenceImageId);
+        lock.lock();
+        try {
+            referenceImageRepository.findById(referenceImageId).ifPresent(image -> {
+                if (!image.getProviderFiles().isEmpty()) {
+                    logger.warn("Dropping provider file handles of reference image {}", referenceImageId);
+                    image.getProviderFiles().clear();
+                    referenceImageRepository.save(image);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(Long referenceImageId) {
+        return refreshLocks[Math.floorMod(referenceImageId.hashCode(), refreshLocks.length)];
+    }
+
+    private boolean needsRefresh(ReferenceImage image, LocalDateTime threshold) {
+        for (ProviderFileStore store : fileStores) {
+            ProviderFileHandle handle = image.getProviderFiles().get(store.getProviderId());
+            if (handle == null || !handle.getExpiresAt().isAfter(threshold)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Uploads the normalized copy to every provider file API that has no
+    // handle for it yet, or whose handle is about to expire. Failures only
+    // mean the image is sent inline. Refreshes of one image are serialized
+    // so concurrent generations upload it only once.
+    private Map<String, ProviderFileHandle> refreshProviderFiles(ReferenceImage image) {
+        if (!providerFilesEnabled || fileStores.isEmpty()) {
+            return Map.of();
+        }
+        LocalDateTime threshold = LocalDateTime.now().plusMinutes(refreshMarginMinutes);
+        if (!needsRefresh(image, threshold)) {
+            for (ProviderFileStore store : fileStores) {
+                meterRegistry.counter("brandsnap.references.provider_files", "provider", store.getProviderId(),
+                        "outcome", "reused").increment();
+            }
+            return image.getProviderFiles();
+        }
+
+        ReentrantLock lock = lockFor(image.getId());
+        lock.lock();
+        try {
+            // Another request may have refreshed it while this one waited
+            ReferenceImage current = referenceImageRepository.findById(image.getId()).orElse(image);
+            Map<String, ProviderFileHandle> handles = current.getProviderFiles();
+            boolean changed = false;
+            for (ProviderFileStore store : fileStores) {
+                String providerId = store.getProviderId();
+                ProviderFileHandle handle = handles.get(providerId);
+                if (handle != null && handle.getExpiresAt().isAfter(threshold)) {
+                    meterRegistry.counter("brandsnap.references.provider_files", "provider", providerId,
+                            "outcome", "reused").increment();
+                    continue;
+                }
+                StoredInputImage copy = new StoredInputImage(assetStorage, current.getNormalizedKey(),
+                        current.getNormalizedMimeType(), current.getNormalizedByteSize(), Map.of());
+                try {
+                    ProviderFileStore.ProviderFile file = store.upload(copy, current.getNormalizedByteSize(),
+                            "brandsnap-reference-" + current.getId());
+                    ProviderFileHandle uploaded = new ProviderFileHandle();
+                    uploaded.setUri(file.uri());
+                    uploaded.setExpiresAt(LocalDateTime.ofInstant(file.expiresAt(), ZoneId.systemDefault()));
+                    handles.put(providerId, uploaded);
+                    meterRegistry.counter("brandsnap.references.provider_files", "provider", providerId,
+                            "outcome", "uploaded").increment();
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not upload reference image {} to {}: {}", current.getId(), providerId,
+                            e.getMessage());
+                    handles.remove(providerId);
+                    meterRegistry.counter("brandsnap.references.provider_files", "provider", providerId,
+                            "outcome", "failed").increment();
+                }
+                changed = true;
+            }
+            if (changed) {
+                referenceImageRepository.save(current);
+            }
+            return handles;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Fills in the size-capped copy. Originals within the cap in a format
+    // every provider takes are used as they are.
+    private void normalize(ReferenceImage image, ImageDimensions dimensions) {
+        image.setNormalizedKey(image.getStorageKey());
+        image.setNormalizedMimeType(image.getMimeType());
+        image.setNormalizedByteSize(image.getByteSize());
+
+        boolean common = "image/png".equals(image.getMimeType()) || "image/jpeg".equals(image.getMimeType());
+        boolean fits = dimensions != null && dimensions.width() <= maxDimension
+                && dimensions.height() <= maxDimension;
+        if (common && fits) {
+            return;
+        }
+        // PNG keeps the transparency logos usually rely on
+        ImageVariantService.Format format = "image/jpeg".equals(image.getMimeType())
+                ? ImageVariantService.Format.JPEG
+                : ImageVariantService.Format.PNG;
+        try {
+            ImageVariantService.Variant variant = imageVariantService.getVariant(image.getStorageKey(),
+                    maxDimension, maxDimension, format);
+            StoredObject stored;
+            try (InputStream in = Files.newInputStream(variant.path())) {
+                stored = assetStorage.store(in);
+            }
+            if (!orphanedObjectCleaner.retain(stored.key())) {
+                try (InputStream in = Files.newInputStream(variant.path())) {
+                    stored = assetStorage.store(in);
+                }
+            }
+            image.setNormalizedKey(stored.key());
+            image.setNormalizedMimeType(format.mimeType());
+            image.setNormalizedByteSize(stored.size());
+        } catch (IOException e) {
+            // E.g. WebP, which ImageIO cannot decode; providers still accept the original
+            logger.warn("Could not normalize reference image {}: {}", image.getStorageKey(), e.getMessage());
+        }
+    }
+
+    // Objects are shared with assets and other references
+    private void releaseObject(String storageKey) {
+        if (storageKey != null) {
+            orphanedObjectCleaner.submit(List.of(storageKey));
+        }
+    }
+}
@@ -52,15 +52,13 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
-    public User findOrCreateGoogleUser(String email, String payload) {
+    public User findOrCreateGoogleUser(String email, String name, String googleSubject) {
         Optional<User> existingUser = userRepository.findByEmail(email);
 
         if (existingUser.isPresent()) {
             return existingUser.get();
         }
 
-        // Extract name from payload
-        String name = extractNameFromPayload(payload);
         if (name == null || name.isEmpty()) {
             name = email.split("@")[0]; // Use email prefix as fallback
         }
@@ -70,33 +68,9 @@ public class UserService {
         newUser.setEmail(email);
         newUser.setUsername(name);
         newUser.setProvider(User.AuthProvider.GOOGLE);
-        newUser.setProviderId(extractSubFromPayload(payload));
+        newUser.setProviderId(googleSubject);
         newUser.setPassword(null); // No password for OAuth2 users
 
         return userRepository.save(newUser);
     }
-
-    private String extractNameFromPayload(String payload) {
-        try {
-            int nameStart = payload.indexOf("\"name\":\"") + 8;
-            if (nameStart == 7)
-                return null;
-            int nameEnd = payload.indexOf("\"", nameStart);
-            return payload.substring(nameStart, nameEnd);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    private String extractSubFromPayload(String payload) {
-        try {
-            int subStart = payload.indexOf("\"sub\":\"") + 7;
-            if (subStart == 6)
-                return null;
-            int subEnd = payload.indexOf("\"", subStart);
-            return payload.substring(subStart, subEnd);
-        } catch (Exception e) {
-            return null;
-        }
-    }
 }
@@ -0,0 +1,183 @@
+package com.brandsnap.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Streams stored objects and cached files to HTTP responses without
+ * buffering them in heap.
+ *
+ * Responses carry a strong ETag and answer conditional requests
+ * ({@code If-None-Match}) with 304, and single byte ranges ({@code Range},
+ * honouring {@code If-Range}) with 206. When Tomcat advertises sendfile
+ * support the file is handed to the connector, which copies it straight from
+ * the page cache to the socket. Otherwise the bytes go through
+ * {@code FileChannel.transferTo}.
+ */
+@Component
+public class AssetContentWriter {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Sentinel for a Range header that cannot be satisfied
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @FunctionalInterface
+    private interface RangeTransfer {
+        void transfer(long position, long count, WritableByteChannel target) throws IOException;
+    }
+
+    public void write(String key, String mimeType, String cacheControl, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        String etag = "\"" + key + "\"";
+        Optional<Path> path = assetStorage.localPath(key);
+        if (path.isPresent()) {
+            writeFile(path.get(), etag, mimeType, cacheControl, request, response);
+            return;
+        }
+        serve(assetStorage.size(key), null, etag, mimeType, cacheControl, request, response,
+                (position, count, target) -> assetStorage.transferTo(key, position, count, target));
+    }
+
+    public void writeFile(Path file, String etag, String mimeType, String cacheControl, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        serve(Files.size(file), file, etag, mimeType, cacheControl, request, response,
+                (position, count, target) -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        long end = position + count;
+                        while (position < end) {
+                            long n = channel.transferTo(position, end - position, target);
+                            if (n <= 0) {
+                                break;
+                            }
+                            position += n;
+                        }
+                    }
+                });
+    }
+
+    private void serve(long size, Path file, String etag, String mimeType, String cacheControl,
+            HttpServletRequest request, HttpServletResponse response, RangeTransfer transfer) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag)) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == UNSATISFIABLE) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(mimeType);
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (file != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        transfer.transfer(start, length, channel);
+        response.flushBuffer();
+    }
+
+    // If-None-Match uses weak comparison, so W/ prefixes are ignored
+    private static boolean matchesAny(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-Range needs a strong match; a date validator never matches here
+    private static boolean ifRangeMatches(String header, String etag) {
+        return header == null || header.trim().equals(etag);
+    }
+
+    /**
+     * Parses a single {@code bytes=} range into inclusive bounds. Returns null
+     * to ignore the header (malformed or multiple ranges, served as a full 200).
+     */
+    private static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') != -1) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[] { Math.max(0, size - suffix), size - 1 };
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || start > end) {
+                return UNSATISFIABLE;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
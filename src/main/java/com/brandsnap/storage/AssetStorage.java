@@ -0,0 +1,62 @@
+package com.brandsnap.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Content-addressed store for generated image bytes.
+ * Objects are keyed by the lowercase hex SHA-256 of their content, so storing
+ * the same bytes twice returns the same key and keeps a single copy.
+ */
+public interface AssetStorage {
+
+    /**
+     * Producer of object content, for callers that push bytes (for example a
+     * decoder) rather than hand over an input stream.
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Stores whatever the writer produces. If the writer throws, nothing is
+     * stored and the exception propagates.
+     */
+    StoredObject store(ContentWriter writer) throws IOException;
+
+    default StoredObject store(InputStream data) throws IOException {
+        return store(data::transferTo);
+    }
+
+    default StoredObject store(byte[] data) throws IOException {
+        return store(new ByteArrayInputStream(data));
+    }
+
+    boolean exists(String key);
+
+    long size(String key) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Copies {@code count} bytes starting at {@code position} into the target
+     * channel, using zero-copy transfer where the implementation supports it.
+     */
+    long transferTo(String key, long position, long count, WritableByteChannel target) throws IOException;
+
+    /**
+     * Filesystem location of the object, if the implementation keeps one.
+     * Used to hand the file straight to the servlet container (sendfile).
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,128 @@
+package com.brandsnap.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves legacy base64 images out of the {@code assets.image_data} LONGTEXT
+ * column into {@link AssetStorage}. Runs in the background after startup and
+ * walks the table in id order, one batch at a time, so it never holds more
+ * than a batch of images in memory and can be resumed after a restart.
+ */
+@Component
+public class AssetStorageMigrator implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(AssetStorageMigrator.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Value("${brandsnap.storage.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${brandsnap.storage.migration.batch-size:50}")
+    private int batchSize;
+
+    private record LegacyRow(long id, String imageData) {
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("asset-storage-migrator").start(this::migrate);
+    }
+
+    public void migrate() {
+        try {
+            if (!hasLegacyColumn()) {
+                return;
+            }
+            relaxLegacyColumn();
+
+            long lastId = 0;
+            long migrated = 0;
+            long failed = 0;
+            while (true) {
+                List<LegacyRow> rows = jdbcTemplate.query(
+                        "SELECT id, image_data FROM assets WHERE storage_key IS NULL AND image_data IS NOT NULL"
+                                + " AND id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new LegacyRow(rs.getLong("id"), rs.getString("image_data")),
+                        lastId, batchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+
+                List<Object[]> updates = new ArrayList<>(rows.size());
+                for (LegacyRow row : rows) {
+                    lastId = row.id();
+                    try {
+                        DataUrl dataUrl = DataUrl.parse(row.imageData());
+                        StoredObject stored = assetStorage.store(dataUrl.data());
+                        ImageDimensions dimensions = ImageDimensions.read(dataUrl.data()).orElse(null);
+                        updates.add(new Object[] {
+                                stored.key(),
+                                dataUrl.mimeType(),
+                                stored.size(),
+                                dimensions != null ? dimensions.width() : null,
+                                dimensions != null ? dimensions.height() : null,
+                                row.id()
+                        });
+                    } catch (Exception e) {
+                        failed++;
+                        logger.warn("Could not migrate image of asset {}: {}", row.id(), e.getMessage());
+                    }
+                }
+
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(
+                            "UPDATE assets SET storage_key = ?, mime_type = ?, byte_size = ?, width = ?, height = ?,"
+                                    + " image_data = NULL WHERE id = ? AND storage_key IS NULL",
+                            updates);
+                    migrated += updates.size();
+                }
+            }
+
+            if (migrated > 0 || failed > 0) {
+                logger.info("Asset storage migration finished: {} migrated, {} failed", migrated, failed);
+            }
+        } catch (Exception e) {
+            logger.error("Asset storage migration aborted: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean hasLegacyColumn() {
+        try {
+            jdbcTemplate.queryForList("SELECT image_data FROM assets WHERE 1 = 0");
+            return true;
+        } catch (BadSqlGrammarException e) {
+            return false;
+        }
+    }
+
+    // Older schemas declared image_data NOT NULL, which would reject new rows
+    // that only carry a storage key. See db/migration/asset_storage_migration.sql.
+    private void relaxLegacyColumn() {
+        String nullable = jdbcTemplate.queryForObject(
+                "SELECT IS_NULLABLE FROM information_schema.COLUMNS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'assets' AND COLUMN_NAME = 'image_data'",
+                String.class);
+        if ("NO".equals(nullable)) {
+            jdbcTemplate.execute("ALTER TABLE assets MODIFY COLUMN image_data LONGTEXT NULL");
+            logger.info("Made assets.image_data nullable");
+        }
+    }
+}
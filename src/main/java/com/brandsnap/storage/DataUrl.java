@@ -0,0 +1,32 @@
+package com.brandsnap.storage;
+
+import java.util.Base64;
+
+/**
+ * Decoded form of a {@code data:<mime>;base64,<payload>} string.
+ */
+public record DataUrl(String mimeType, byte[] data) {
+
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    public static DataUrl parse(String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Empty image data");
+        }
+        if (!value.startsWith("data:")) {
+            // Bare base64 without a data URL header
+            return new DataUrl(DEFAULT_MIME_TYPE, Base64.getMimeDecoder().decode(value));
+        }
+        int commaIndex = value.indexOf(',');
+        if (commaIndex == -1) {
+            throw new IllegalArgumentException("Malformed data URL");
+        }
+        String header = value.substring(5, commaIndex);
+        if (!header.endsWith(";base64")) {
+            throw new IllegalArgumentException("Only base64 data URLs are supported");
+        }
+        String mimeType = header.substring(0, header.length() - ";base64".length());
+        byte[] data = Base64.getMimeDecoder().decode(value.substring(commaIndex + 1));
+        return new DataUrl(mimeType.isEmpty() ? DEFAULT_MIME_TYPE : mimeType, data);
+    }
+}
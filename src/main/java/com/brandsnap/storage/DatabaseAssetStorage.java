@@ -0,0 +1,213 @@
+package com.brandsnap.storage;
+
+import com.brandsnap.repository.AssetBlobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps objects in MySQL as raw bytes in {@code asset_blobs.data}
+ * (LONGBLOB), for deployments without a shared filesystem. Compared with the
+ * old base64 LONGTEXT column this saves the 33% encoding overhead and the
+ * encode/decode work on every write and read.
+ *
+ * Content is spooled to a temp file while it is hashed and then streamed
+ * into the insert, so writes never hold a whole image in heap. Metadata
+ * lookups go through {@link AssetBlobRepository} and never load the data
+ * column; reads fetch {@code SUBSTRING}s of it a chunk at a time, so a range
+ * request only pulls the bytes it asks for.
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.storage.type", havingValue = "db")
+public class DatabaseAssetStorage implements AssetStorage {
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int READ_CHUNK_BYTES = 1024 * 1024;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AssetBlobRepository assetBlobRepository;
+
+    @Override
+    public StoredObject store(ContentWriter writer) throws IOException {
+        Path tmp = Files.createTempFile("asset-blob-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            byte[] header = new byte[ImageMimeTypes.HEADER_LENGTH];
+            int headerLength;
+            try (OutputStream out = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp, StandardOpenOption.WRITE)), digest)) {
+                writer.writeTo(out);
+            }
+            try (InputStream in = Files.newInputStream(tmp)) {
+                headerLength = in.readNBytes(header, 0, header.length);
+            }
+            long size = Files.size(tmp);
+            String key = HexFormat.of().formatHex(digest.digest());
+            if (assetBlobRepository.existsById(key)) {
+                return new StoredObject(key, size, true);
+            }
+            String mimeType = ImageMimeTypes.detect(header, headerLength).orElse(null);
+
+            // INSERT IGNORE: a concurrent writer of the same content wins harmlessly
+            int inserted;
+            try (InputStream data = Files.newInputStream(tmp)) {
+                inserted = jdbcTemplate.update(
+                        "INSERT IGNORE INTO asset_blobs (storage_key, data, mime_type, byte_size, created_at)"
+                                + " VALUES (?, ?, ?, ?, ?)",
+                        ps -> {
+                            ps.setString(1, key);
+                            ps.setBinaryStream(2, data, size);
+                            ps.setString(3, mimeType);
+                            ps.setLong(4, size);
+                            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                        });
+            }
+            return new StoredObject(key, size, inserted == 0);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return assetBlobRepository.existsById(checkKey(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return assetBlobRepository.findByteSize(checkKey(key))
+                .orElseThrow(() -> new FileNotFoundException("Asset object not found: " + key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return new BlobInputStream(key, size(key));
+    }
+
+    @Override
+    public long transferTo(String key, long position, long count, WritableByteChannel target) throws IOException {
+        long end = Math.min(position + count, size(key));
+        long offset = position;
+        long transferred = 0;
+        while (offset < end) {
+            byte[] chunk = readRange(key, offset, (int) Math.min(end - offset, READ_CHUNK_BYTES));
+            if (chunk.length == 0) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            while (buffer.hasRemaining()) {
+                transferred += target.write(buffer);
+            }
+            offset += chunk.length;
+        }
+        return transferred;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        assetBlobRepository.deleteById(checkKey(key));
+    }
+
+    // SUBSTRING on a LONGBLOB is evaluated by the server, so only the
+    // requested bytes cross the wire and land in heap
+    private byte[] readRange(String key, long offset, int length) throws IOException {
+        List<byte[]> rows = jdbcTemplate.query("SELECT SUBSTRING(data, ?, ?) FROM asset_blobs WHERE storage_key = ?",
+                (rs, rowNum) -> rs.getBytes(1), offset + 1, length, checkKey(key));
+        if (rows.isEmpty()) {
+            throw new FileNotFoundException("Asset object not found: " + key);
+        }
+        byte[] data = rows.get(0);
+        return data != null ? data : new byte[0];
+    }
+
+    /** Reads an object chunk by chunk instead of materializing the whole blob. */
+    private class BlobInputStream extends InputStream {
+        private final String key;
+        private final long size;
+        private long offset;
+        private byte[] chunk = new byte[0];
+        private int chunkPosition;
+
+        BlobInputStream(String key, long size) {
+            this.key = key;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[chunkPosition++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, b, off, n);
+            chunkPosition += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - chunkPosition;
+        }
+
+        private boolean fill() throws IOException {
+            if (chunkPosition < chunk.length) {
+                return true;
+            }
+            if (offset >= size) {
+                return false;
+            }
+            chunk = readRange(key, offset, (int) Math.min(size - offset, READ_CHUNK_BYTES));
+            chunkPosition = 0;
+            offset += chunk.length;
+            return chunk.length > 0;
+        }
+    }
+
+    private static String checkKey(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return key;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
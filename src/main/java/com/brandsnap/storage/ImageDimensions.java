@@ -0,0 +1,41 @@
+package com.brandsnap.storage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Image width and height read from the header only, without decoding pixels.
+ */
+public record ImageDimensions(int width, int height) {
+
+    public static Optional<ImageDimensions> read(byte[] data) {
+        return read(new ByteArrayInputStream(data));
+    }
+
+    public static Optional<ImageDimensions> read(InputStream data) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(data)) {
+            if (in == null) {
+                return Optional.empty();
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return Optional.of(new ImageDimensions(reader.getWidth(0), reader.getHeight(0)));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.brandsnap.storage;
+
+import java.util.Optional;
+
+/**
+ * Identifies image formats from their leading magic bytes, independent of
+ * whatever type a client or provider claims.
+ */
+public final class ImageMimeTypes {
+
+    /**
+     * Number of leading bytes {@link #detect} needs.
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private ImageMimeTypes() {
+    }
+
+    public static Optional<String> detect(byte[] header, int length) {
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of("image/png");
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of("image/jpeg");
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return Optional.of("image/gif");
+        }
+        if (length >= 12 && startsWith(header, length, 'R', 'I', 'F', 'F')
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return Optional.of("image/webp");
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
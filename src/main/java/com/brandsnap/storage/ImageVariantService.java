@@ -0,0 +1,406 @@
+package com.brandsnap.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Resized and re-encoded renditions of stored images, e.g. grid thumbnails.
+ *
+ * Each variant is encoded once and kept in a disk cache bounded by
+ * {@code brandsnap.variants.cache-max-bytes}, evicting the least recently
+ * used files first. Concurrent requests for the same variant wait for a single
+ * encode, and the number of encodes running at once is capped.
+ */
+@Component
+public class ImageVariantService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    // How long a returned file is protected from eviction, which covers the
+    // gap until the caller (or the container, for sendfile) opens it
+    private static final long LEASE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    public enum Format {
+        JPEG("jpg", "image/jpeg"),
+        PNG("png", "image/png");
+
+        private final String extension;
+        private final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        public static Format parse(String value) {
+            return switch (value.toLowerCase()) {
+                case "jpeg", "jpg" -> JPEG;
+                case "png" -> PNG;
+                default -> throw new IllegalArgumentException("Unsupported image format: " + value);
+            };
+        }
+    }
+
+    /** Thrown when an original is too large to decode; callers serve it as is. */
+    public static class SourceTooLargeException extends IOException {
+        public SourceTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    public record Variant(Path path, Format format) {
+
+        // Variant file names are derived from the content hash and encode settings
+        public String etag() {
+            return "\"" + path.getFileName() + "\"";
+        }
+    }
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Value("${brandsnap.variants.cache-dir:./data/variants}")
+    private String cacheDir;
+
+    @Value("${brandsnap.variants.cache-max-bytes:536870912}")
+    private long cacheMaxBytes;
+
+    @Value("${brandsnap.variants.max-dimension:2048}")
+    private int maxDimension;
+
+    @Value("${brandsnap.variants.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${brandsnap.variants.max-concurrent-encodes:0}")
+    private int maxConcurrentEncodes;
+
+    // Decompression bomb guard, checked against the header before decoding
+    @Value("${brandsnap.variants.max-source-pixels:50000000}")
+    private long maxSourcePixels;
+
+    private Path cachePath;
+
+    // Access-ordered index of cached files and their sizes, eldest first
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes;
+
+    // When each entry was last handed out, guarded by index
+    private final Map<String, Long> leases = new HashMap<>();
+
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private Semaphore encodePermits;
+
+    @PostConstruct
+    public void init() throws IOException {
+        cachePath = Paths.get(cacheDir).toAbsolutePath().normalize();
+        Files.createDirectories(cachePath);
+        int permits = maxConcurrentEncodes > 0 ? maxConcurrentEncodes : Runtime.getRuntime().availableProcessors();
+        encodePermits = new Semaphore(permits);
+
+        // Rebuild the LRU order from modification times, which are bumped on every hit
+        try (Stream<Path> files = Files.list(cachePath)) {
+            List<Path> existing = files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(ImageVariantService::lastModified))
+                    .toList();
+            synchronized (index) {
+                for (Path file : existing) {
+                    if (file.getFileName().toString().endsWith(".part")) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    long size = Files.size(file);
+                    index.put(file.getFileName().toString(), size);
+                    cachedBytes += size;
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Returns the variant of {@code storageKey} that fits within
+     * {@code width} x {@code height} (either may be null), encoding it first
+     * if it is not cached yet. Images are never upscaled.
+     */
+    public Variant getVariant(String storageKey, Integer width, Integer height, Format format) throws IOException {
+        int w = clamp(width);
+        int h = clamp(height);
+        String name = storageKey + "-" + w + "x" + h + "-q" + Math.round(jpegQuality * 100) + "." + format.extension;
+        Path file = cachePath.resolve(name);
+
+        for (int attempt = 1; ; attempt++) {
+            if (touch(name, file)) {
+                return new Variant(file, format);
+            }
+
+            CompletableFuture<Path> mine = new CompletableFuture<>();
+            CompletableFuture<Path> running = inFlight.putIfAbsent(name, mine);
+            if (running != null) {
+                join(running);
+                // Leased by touch() on the next pass, unless it was evicted already
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new IOException("Image variant " + name + " was evicted before it could be served");
+                }
+                continue;
+            }
+            try {
+                encode(storageKey, w, h, format, file);
+                register(name, Files.size(file));
+                mine.complete(file);
+                return new Variant(file, format);
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(name, mine);
+            }
+        }
+    }
+
+    private void encode(String storageKey, int width, int height, Format format, Path target) throws IOException {
+        try {
+            encodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to encode", e);
+        }
+        try {
+            BufferedImage source = decode(storageKey, width, height);
+            BufferedImage scaled = scale(source, width, height, format == Format.JPEG);
+
+            Path tmp = Files.createTempFile(cachePath, "variant-", ".part");
+            try {
+                write(scaled, format, tmp);
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } finally {
+            encodePermits.release();
+        }
+    }
+
+    // Decodes with source subsampling so a large original is never fully
+    // materialized when only a thumbnail is needed.
+    private BufferedImage decode(String storageKey, int width, int height) throws IOException {
+        try (InputStream data = assetStorage.open(storageKey);
+                ImageInputStream in = ImageIO.createImageInputStream(data)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxSourcePixels) {
+                    throw new SourceTooLargeException(
+                            "Image too large to resize: " + sourceWidth + "x" + sourceHeight);
+                }
+                double ratio = Math.min((double) sourceWidth / width, (double) sourceHeight / height);
+                // Keep at least twice the target resolution for a smooth final scale
+                int subsampling = Math.max(1, (int) Math.floor(ratio / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int maxWidth, int maxHeight, boolean opaque) {
+        double ratio = Math.min(1.0, Math.min((double) maxWidth / source.getWidth(),
+                (double) maxHeight / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage target = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            if (opaque) {
+                // JPEG has no alpha channel; flatten onto white
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private void write(BufferedImage image, Format format, Path target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.extension);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteProgressive()) {
+                // Progressive JPEG / interlaced PNG render early in the browser
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            if (format == Format.JPEG && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private int clamp(Integer dimension) {
+        if (dimension == null || dimension <= 0) {
+            return maxDimension;
+        }
+        return Math.min(dimension, maxDimension);
+    }
+
+    // Hits take a lease, so the file stays until the caller has opened it
+    private boolean touch(String name, Path file) {
+        synchronized (index) {
+            if (index.get(name) == null) {
+                return false;
+            }
+            leases.put(name, System.nanoTime());
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            // Evicted between the index lookup and now
+            synchronized (index) {
+                Long size = index.remove(name);
+                leases.remove(name);
+                if (size != null) {
+                    cachedBytes -= size;
+                }
+            }
+            return false;
+        }
+    }
+
+    // The new file is leased too: a variant larger than the whole cache must
+    // still be served once before it goes
+    private void register(String name, long size) {
+        synchronized (index) {
+            Long previous = index.put(name, size);
+            leases.put(name, System.nanoTime());
+            cachedBytes += size - (previous != null ? previous : 0);
+        }
+        evict();
+    }
+
+    // Evicts least recently used files, skipping any handed out within the
+    // lease period. Once a caller has the file open, deleting it is harmless;
+    // if every candidate is leased the cache stays over budget until later.
+    private void evict() {
+        while (true) {
+            String eldest = null;
+            synchronized (index) {
+                if (cachedBytes <= cacheMaxBytes || index.isEmpty()) {
+                    return;
+                }
+                long now = System.nanoTime();
+                for (Map.Entry<String, Long> entry : index.entrySet()) {
+                    Long leasedAt = leases.get(entry.getKey());
+                    if (leasedAt != null && now - leasedAt < LEASE_NANOS) {
+                        continue;
+                    }
+                    eldest = entry.getKey();
+                    cachedBytes -= entry.getValue();
+                    break;
+                }
+                if (eldest == null) {
+                    return;
+                }
+                index.remove(eldest);
+                leases.remove(eldest);
+            }
+            try {
+                Files.deleteIfExists(cachePath.resolve(eldest));
+            } catch (IOException e) {
+                logger.warn("Could not evict image variant {}: {}", eldest, e.getMessage());
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path join(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+}
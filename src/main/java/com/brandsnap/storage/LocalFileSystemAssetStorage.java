@@ -0,0 +1,152 @@
+package com.brandsnap.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Stores objects on the local filesystem as {@code <root>/ab/cd/abcd...}.
+ * Writes go to a temp file first and are moved into place atomically, so
+ * readers never observe a partially written object.
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalFileSystemAssetStorage implements AssetStorage {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileSystemAssetStorage.class);
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${brandsnap.storage.local.root}")
+    private String root;
+
+    private Path rootPath;
+
+    private Path tmpPath;
+
+    @PostConstruct
+    public void init() throws IOException {
+        rootPath = Paths.get(root).toAbsolutePath().normalize();
+        tmpPath = rootPath.resolve("tmp");
+        Files.createDirectories(tmpPath);
+        logger.info("Local asset storage at {}", rootPath);
+    }
+
+    @Override
+    public StoredObject store(ContentWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(tmpPath, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp, StandardOpenOption.WRITE)), digest)) {
+                writer.writeTo(out);
+            }
+            long size = Files.size(tmp);
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = resolve(key);
+            if (Files.exists(target)) {
+                return new StoredObject(key, size, true);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new StoredObject(key, size, false);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return Files.size(resolve(key));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Asset object not found: " + key);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return Files.newInputStream(resolve(key));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Asset object not found: " + key);
+        }
+    }
+
+    @Override
+    public long transferTo(String key, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long end = Math.min(position + count, channel.size());
+            long transferred = 0;
+            // transferTo may copy fewer bytes than requested, so loop until done
+            while (position + transferred < end) {
+                long n = channel.transferTo(position + transferred, end - position - transferred, target);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Asset object not found: " + key);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return rootPath.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.brandsnap.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies objects from a local filesystem store into {@code asset_blobs}
+ * after switching {@code brandsnap.storage.type} from {@code local} to
+ * {@code db}. Runs in the background, walking each table that references
+ * stored objects by its primary key one batch at a time; the app keeps
+ * serving meanwhile and a restart simply skips what was already copied.
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.storage.type", havingValue = "db")
+public class LocalToDatabaseAssetImporter implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LocalToDatabaseAssetImporter.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    // Root of the former local store; empty disables the import
+    @Value("${brandsnap.storage.db.import-from-local:}")
+    private String localRoot;
+
+    @Value("${brandsnap.storage.migration.batch-size:50}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (localRoot == null || localRoot.isBlank()) {
+            return;
+        }
+        Thread.ofVirtual().name("asset-blob-importer").start(this::importAll);
+    }
+
+    public void importAll() {
+        Path root = Paths.get(localRoot).toAbsolutePath().normalize();
+        long[] counts = new long[2];
+        try {
+            importFrom(root, "assets", "id", 0L, List.of("storage_key"), counts);
+            importFrom(root, "generation_cache", "cache_key", "", List.of("storage_key"), counts);
+            importFrom(root, "reference_images", "id", 0L, List.of("storage_key", "normalized_key"), counts);
+            logger.info("Imported {} objects from {} into the database ({} not found locally)", counts[0], root,
+                    counts[1]);
+        } catch (Exception e) {
+            logger.error("Asset blob import aborted after {} objects: {}", counts[0], e.getMessage(), e);
+        }
+    }
+
+    // Keyset walk over the table's primary key, so each batch is an index
+    // range scan; keys shared between tables are skipped by the exists check.
+    private void importFrom(Path root, String table, String idColumn, Object start, List<String> keyColumns,
+            long[] counts) throws IOException {
+        String sql = "SELECT " + idColumn + ", " + String.join(", ", keyColumns) + " FROM " + table
+                + " WHERE " + idColumn + " > ? ORDER BY " + idColumn + " LIMIT ?";
+        Object last = start;
+        while (true) {
+            List<String> keys = new ArrayList<>();
+            Object[] cursor = { null };
+            jdbcTemplate.query(sql, rs -> {
+                cursor[0] = rs.getObject(1);
+                for (int i = 0; i < keyColumns.size(); i++) {
+                    keys.add(rs.getString(i + 2));
+                }
+            }, last, batchSize);
+            if (cursor[0] == null) {
+                return;
+            }
+            last = cursor[0];
+            for (String key : keys) {
+                if (key != null) {
+                    copy(root, key, counts);
+                }
+            }
+        }
+    }
+
+    private void copy(Path root, String key, long[] counts) throws IOException {
+        if (assetStorage.exists(key)) {
+            return;
+        }
+        Path file = root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+        if (!Files.exists(file)) {
+            counts[1]++;
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            StoredObject stored = assetStorage.store(in);
+            if (!stored.key().equals(key)) {
+                logger.warn("Local object {} has different content ({}), skipped", key, stored.key());
+                if (!stored.existing()) {
+                    assetStorage.delete(stored.key());
+                }
+                return;
+            }
+        }
+        counts[0]++;
+    }
+}
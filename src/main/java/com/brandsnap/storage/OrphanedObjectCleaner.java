@@ -0,0 +1,195 @@
+package com.brandsnap.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deletes stored objects nothing points at any more, off the request path.
+ *
+ * Objects are content-addressed and shared between assets and reference
+ * images, and a generation can hand out a key that already exists (a cache
+ * hit, or identical bytes) well before the row pointing at it is saved. So
+ * released keys are only marked here; a background sweep deletes a key once
+ * it has stayed marked for {@code brandsnap.storage.orphans.grace-period-ms},
+ * longer than any generation runs, and is still not referenced by either
+ * table at that point. Code that reuses an existing object claims it first
+ * with {@link #retain}, which clears the mark under the same per-key lock
+ * the sweep deletes under. Marks live in memory, so a restart leaves the
+ * pending candidates in place.
+ */
+@Component
+public class OrphanedObjectCleaner {
+    private static final Logger logger = LoggerFactory.getLogger(OrphanedObjectCleaner.class);
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AssetStorage assetStorage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.storage.orphans.grace-period-ms:900000}")
+    private long gracePeriodMs;
+
+    @Value("${brandsnap.storage.orphans.sweep-interval-ms:60000}")
+    private long sweepIntervalMs;
+
+    // Candidate key -> System.nanoTime() when it was last released
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] keyLocks = new ReentrantLock[64];
+
+    {
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    private ScheduledExecutorService executor;
+
+    private Counter deleted;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("orphaned-object-cleaner").factory());
+        executor.scheduleWithFixedDelay(this::sweepSafely, sweepIntervalMs, sweepIntervalMs,
+                TimeUnit.MILLISECONDS);
+        deleted = Counter.builder("brandsnap.storage.orphans.deleted")
+                .description("Stored objects deleted after nothing pointed at them for the grace period")
+                .register(meterRegistry);
+        Gauge.builder("brandsnap.storage.orphans.pending", candidates, Map::size)
+                .description("Released keys waiting out the grace period before the orphan sweep")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+        if (!candidates.isEmpty()) {
+            logger.warn("Stopped with {} candidate objects not cleaned up", candidates.size());
+        }
+    }
+
+    /**
+     * Marks keys whose rows were just deleted or replaced. Releasing a key
+     * again restarts its grace period; keys still in use when it ends are
+     * left alone.
+     */
+    public void submit(Collection<String> keys) {
+        long now = System.nanoTime();
+        for (String key : keys) {
+            if (key != null) {
+                candidates.put(key, now);
+            }
+        }
+    }
+
+    /**
+     * Claims an existing object for a row about to be saved: cancels any
+     * pending deletion and reports whether the object is still there. Once
+     * this returns true the object stays until it is released again.
+     */
+    public boolean retain(String key) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            candidates.remove(key);
+        } finally {
+            lock.unlock();
+        }
+        return assetStorage.exists(key);
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            logger.warn("Orphaned object sweep failed: {}", e.getMessage());
+        }
+    }
+
+    void sweep() {
+        long now = System.nanoTime();
+        long graceNanos = TimeUnit.MILLISECONDS.toNanos(gracePeriodMs);
+        List<String> due = new ArrayList<>();
+        candidates.forEach((key, releasedAt) -> {
+            if (now - releasedAt >= graceNanos) {
+                due.add(key);
+            }
+        });
+        for (int from = 0; from < due.size(); from += SWEEP_BATCH_SIZE) {
+            clean(due.subList(from, Math.min(due.size(), from + SWEEP_BATCH_SIZE)), graceNanos);
+        }
+    }
+
+    private void clean(List<String> keys, long graceNanos) {
+        String placeholders = String.join(",", Collections.nCopies(keys.size(), "?"));
+        List<Object> args = new ArrayList<>(keys.size() * 3);
+        for (int i = 0; i < 3; i++) {
+            args.addAll(keys);
+        }
+        Set<String> inUse = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT storage_key FROM assets WHERE storage_key IN (" + placeholders + ")"
+                        + " UNION SELECT storage_key FROM reference_images WHERE storage_key IN (" + placeholders + ")"
+                        + " UNION SELECT normalized_key FROM reference_images WHERE normalized_key IN ("
+                        + placeholders + ")",
+                String.class, args.toArray()));
+
+        for (String key : keys) {
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                // Retained or released again since the sweep started
+                Long releasedAt = candidates.get(key);
+                if (releasedAt == null || System.nanoTime() - releasedAt < graceNanos) {
+                    continue;
+                }
+                candidates.remove(key);
+                if (inUse.contains(key)) {
+                    continue;
+                }
+                assetStorage.delete(key);
+                deleted.increment();
+            } catch (IOException e) {
+                logger.warn("Could not delete stored object {}: {}", key, e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), keyLocks.length)];
+    }
+}
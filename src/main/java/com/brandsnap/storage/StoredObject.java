@@ -0,0 +1,11 @@
+package com.brandsnap.storage;
+
+/**
+ * Result of writing bytes to {@link AssetStorage}.
+ *
+ * @param key      SHA-256 of the content, lowercase hex
+ * @param size     size of the content in bytes
+ * @param existing true if identical content was already stored
+ */
+public record StoredObject(String key, long size, boolean existing) {
+}
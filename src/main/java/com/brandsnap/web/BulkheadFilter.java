@@ -0,0 +1,169 @@
+package com.brandsnap.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-endpoint concurrency bulkheads. Each request class gets its own
+ * semaphore, so a flood of slow batch generations cannot hold every request
+ * thread (or, with virtual threads, every database connection) while cheap
+ * reads such as {@code /api/projects} wait behind them. Single generations
+ * are left to {@link com.brandsnap.generation.AdaptiveConcurrencyLimiter}.
+ *
+ * A request that cannot get a permit within the group's wait time is
+ * answered with {@code 503} and {@code Retry-After}. Runs after Spring
+ * Security, so unauthenticated requests never take a permit.
+ */
+@Component
+public class BulkheadFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.bulkhead.generation.max-concurrent:4}")
+    private int generationMaxConcurrent;
+
+    @Value("${brandsnap.bulkhead.generation.max-wait-ms:0}")
+    private long generationMaxWaitMs;
+
+    @Value("${brandsnap.bulkhead.images.max-concurrent:16}")
+    private int imagesMaxConcurrent;
+
+    @Value("${brandsnap.bulkhead.images.max-wait-ms:500}")
+    private long imagesMaxWaitMs;
+
+    @Value("${brandsnap.bulkhead.auth.max-concurrent:16}")
+    private int authMaxConcurrent;
+
+    @Value("${brandsnap.bulkhead.auth.max-wait-ms:500}")
+    private long authMaxWaitMs;
+
+    @Value("${brandsnap.bulkhead.default.max-concurrent:200}")
+    private int defaultMaxConcurrent;
+
+    @Value("${brandsnap.bulkhead.default.max-wait-ms:1000}")
+    private long defaultMaxWaitMs;
+
+    private Bulkhead generation;
+
+    private Bulkhead images;
+
+    private Bulkhead auth;
+
+    private Bulkhead fallback;
+
+    private final class Bulkhead {
+        final String name;
+        final int maxConcurrent;
+        final long maxWaitMs;
+        final Semaphore permits;
+        final Counter rejected;
+
+        Bulkhead(String name, int maxConcurrent, long maxWaitMs) {
+            this.name = name;
+            this.maxConcurrent = maxConcurrent;
+            this.maxWaitMs = maxWaitMs;
+            this.permits = new Semaphore(maxConcurrent, true);
+            Gauge.builder("brandsnap.bulkhead.in_flight", permits, p -> maxConcurrent - p.availablePermits())
+                    .tag("bulkhead", name)
+                    .register(meterRegistry);
+            Gauge.builder("brandsnap.bulkhead.waiting", permits, Semaphore::getQueueLength)
+                    .tag("bulkhead", name)
+                    .register(meterRegistry);
+            rejected = Counter.builder("brandsnap.bulkhead.rejected")
+                    .tag("bulkhead", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        generation = new Bulkhead("generation", generationMaxConcurrent, generationMaxWaitMs);
+        images = new Bulkhead("images", imagesMaxConcurrent, imagesMaxWaitMs);
+        auth = new Bulkhead("auth", authMaxConcurrent, authMaxWaitMs);
+        fallback = new Bulkhead("default", defaultMaxConcurrent, defaultMaxWaitMs);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead = select(request);
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.maxWaitMs > 0
+                    ? bulkhead.permits.tryAcquire(bulkhead.maxWaitMs, TimeUnit.MILLISECONDS)
+                    : bulkhead.permits.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            bulkhead.rejected.increment();
+            logger.debug("Bulkhead {} full ({} in flight), rejecting {} {}", bulkhead.name, bulkhead.maxConcurrent,
+                    request.getMethod(), request.getRequestURI());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"Server is busy, try again later\"}");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.permits.release();
+        }
+    }
+
+    // Only the request thread's share of the work is bounded here; background
+    // generation jobs and SSE batches are bounded by their own executors.
+    private Bulkhead select(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        if (!path.startsWith("/api/")) {
+            return null;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return auth;
+        }
+        if (path.startsWith("/api/assets")) {
+            if (path.startsWith("/api/assets/content/") || path.endsWith("/image")) {
+                return images;
+            }
+            // Synchronous generation is shed by AdaptiveConcurrencyLimiter, whose
+            // limit adapts to the provider and whose 503 carries a real Retry-After
+            if ("POST".equals(method) && path.equals("/api/assets") || "PUT".equals(method)) {
+                return null;
+            }
+        }
+        if (path.startsWith("/api/projects/") && path.contains("/references/") && path.endsWith("/image")) {
+            return images;
+        }
+        if ("POST".equals(method) && path.startsWith("/api/campaigns/") && path.endsWith("/assets:batch")) {
+            return generation;
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,91 @@
+package com.brandsnap.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the JFR {@code jdk.VirtualThreadPinned} event in-process. Every
+ * time a virtual thread blocks while pinned to its carrier for longer than
+ * the threshold (a native frame, or a monitor held inside a driver on older
+ * JDKs), the top of its stack is logged and the
+ * {@code brandsnap.virtual_threads.pinned} metric is updated.
+ */
+@Component
+@ConditionalOnProperty(name = "brandsnap.virtual-threads.pinning-diagnostics", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final int LOGGED_FRAMES = 12;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${brandsnap.virtual-threads.pinning-threshold-ms:20}")
+    private long thresholdMs;
+
+    private RecordingStream stream;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Counter pinned = Counter.builder("brandsnap.virtual_threads.pinned")
+                .description("Virtual threads that blocked while pinned to a carrier thread")
+                .register(meterRegistry);
+        Timer pinnedTime = Timer.builder("brandsnap.virtual_threads.pinned.duration")
+                .register(meterRegistry);
+        try {
+            stream = new RecordingStream();
+            stream.enable("jdk.VirtualThreadPinned")
+                    .withThreshold(Duration.ofMillis(thresholdMs))
+                    .withStackTrace();
+            stream.onEvent("jdk.VirtualThreadPinned", event -> {
+                pinned.increment();
+                pinnedTime.record(event.getDuration());
+                logger.warn("Virtual thread pinned for {} ms:\n{}", event.getDuration().toMillis(), topFrames(event));
+            });
+            stream.startAsync();
+            logger.info("Virtual thread pinning diagnostics enabled (threshold {} ms)", thresholdMs);
+        } catch (Exception e) {
+            logger.warn("Could not start virtual thread pinning diagnostics: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private static String topFrames(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return "\t(no stack trace)";
+        }
+        return stackTrace.getFrames().stream()
+                .limit(LOGGED_FRAMES)
+                .map(VirtualThreadPinningMonitor::describe)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + " (line " + frame.getLineNumber() + ")";
+    }
+}
@@ -0,0 +1,17 @@
+-- SQL script to move asset images out of the assets table
+-- Run this script on your brandsnap database
+
+-- Add the columns describing the stored object
+ALTER TABLE assets ADD COLUMN IF NOT EXISTS storage_key VARCHAR(64) NULL;
+ALTER TABLE assets ADD COLUMN IF NOT EXISTS mime_type VARCHAR(64) NULL;
+ALTER TABLE assets ADD COLUMN IF NOT EXISTS byte_size BIGINT NULL;
+ALTER TABLE assets ADD COLUMN IF NOT EXISTS width INT NULL;
+ALTER TABLE assets ADD COLUMN IF NOT EXISTS height INT NULL;
+
+-- New rows no longer carry base64 image data
+ALTER TABLE assets MODIFY COLUMN image_data LONGTEXT NULL;
+
+-- Existing rows are copied into asset storage by AssetStorageMigrator on startup
+-- (brandsnap.storage.migration.enabled). Once every row has a storage_key the
+-- legacy column can be dropped:
+-- ALTER TABLE assets DROP COLUMN image_data;
@@ -0,0 +1,5 @@
+-- SQL script to support forced invalidation of JWTs per user
+-- Run this script on your brandsnap database
+
+-- Tokens carry the version they were issued with; bumping it revokes them all
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version INT NOT NULL DEFAULT 0;
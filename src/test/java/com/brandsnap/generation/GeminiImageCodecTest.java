@@ -0,0 +1,97 @@
+package com.brandsnap.generation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reads the streamed request body the way the HTTP client does, including
+ * when the input image fails part way through.
+ */
+class GeminiImageCodecTest {
+
+    private final GeminiImageCodec codec = new GeminiImageCodec();
+
+    @Test
+    void writesCompleteRequest() throws IOException {
+        byte[] body;
+        try (InputStream in = codec.openRequest("a red bicycle", new TestImage(300_000, -1))) {
+            body = in.readAllBytes();
+        }
+
+        JsonNode parts = new ObjectMapper().readTree(body).path("contents").get(0).path("parts");
+        assertThat(parts.get(0).path("inline_data").path("data").asText()).hasSize(300_000);
+        assertThat(parts.get(1).path("text").asText()).isEqualTo("a red bicycle");
+    }
+
+    @Test
+    void imageFailurePartWayFailsTheBodyInsteadOfEndingIt() throws IOException {
+        // More than the pipe buffer is written before the failure
+        try (InputStream in = codec.openRequest("a red bicycle", new TestImage(300_000, 200_000))) {
+            assertThatThrownBy(in::readAllBytes)
+                    .isInstanceOf(IOException.class)
+                    .hasMessage("Could not write provider request")
+                    .hasRootCauseMessage("image storage went away");
+        }
+    }
+
+    @Test
+    void earlyImageFailureFailsTheBody() throws IOException {
+        try (InputStream in = codec.openRequest("a red bicycle", new TestImage(300_000, 10))) {
+            assertThatThrownBy(in::readAllBytes)
+                    .isInstanceOf(IOException.class)
+                    .hasRootCauseMessage("image storage went away");
+        }
+    }
+
+    // Base64 text of the given length that throws after failAfter characters
+    private record TestImage(int length, int failAfter) implements InputImage {
+
+        @Override
+        public String mimeType() {
+            return "image/png";
+        }
+
+        @Override
+        public void writeBase64(JsonGenerator generator) throws IOException {
+            generator.writeString(new Reader() {
+                private int position;
+
+                @Override
+                public int read(char[] buffer, int off, int len) throws IOException {
+                    if (failAfter >= 0 && position >= failAfter) {
+                        throw new IOException("image storage went away");
+                    }
+                    if (position >= length) {
+                        return -1;
+                    }
+                    int n = Math.min(len, length - position);
+                    if (failAfter >= 0) {
+                        n = Math.min(n, failAfter - position);
+                    }
+                    Arrays.fill(buffer, off, off + n, 'A');
+                    position += n;
+                    return n;
+                }
+
+                @Override
+                public void close() {
+                }
+            }, length);
+        }
+
+        @Override
+        public InputStream openStream() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
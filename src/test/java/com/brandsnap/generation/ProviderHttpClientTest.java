@@ -0,0 +1,154 @@
+package com.brandsnap.generation;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Streams response bodies from a local server, including one that stalls
+ * after sending its headers.
+ */
+class ProviderHttpClientTest {
+
+    private HttpServer server;
+    private final CountDownLatch stall = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ProviderHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "image".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/stall", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 1024);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[16]);
+                out.flush();
+                stall.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // Client gave up
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        client = new ProviderHttpClient();
+        ReflectionTestUtils.setField(client, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "requestTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(client, "maxConcurrentPerHost", 1);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 100L);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stall.countDown();
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void readsStreamedBody() throws IOException {
+        String body = client.exchange(uri("/ok"), Map.of(), HttpRequest.BodyPublishers.ofString("{}"),
+                response -> {
+                    try (InputStream in = response.body()) {
+                        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                    }
+                });
+
+        assertThat(body).isEqualTo("image");
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void stalledBodyFailsAtTheDeadlineAndReleasesThePermit() throws IOException {
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.exchange(uri("/stall"), Map.of(), HttpRequest.BodyPublishers.ofString("{}"),
+                response -> {
+                    try (InputStream in = response.body()) {
+                        return in.readAllBytes();
+                    }
+                }, Duration.ofMillis(500)))
+                .isInstanceOf(HttpTimeoutException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(inFlight()).isZero();
+        // The single permit is free again for the next call
+        String body = client.exchange(uri("/ok"), Map.of(), HttpRequest.BodyPublishers.ofString("{}"),
+                response -> {
+                    try (InputStream in = response.body()) {
+                        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                    }
+                });
+        assertThat(body).isEqualTo("image");
+    }
+
+    @Test
+    void permitIsHeldWhileTheBodyIsRead() throws Exception {
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try {
+                client.exchange(uri("/stall"), Map.of(), HttpRequest.BodyPublishers.ofString("{}"),
+                        response -> {
+                            try (InputStream in = response.body()) {
+                                return in.readAllBytes();
+                            }
+                        });
+            } catch (IOException e) {
+                // Released by tearDown
+            }
+        });
+        while (inFlight() == 0) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> client.post(uri("/ok"), Map.of(), HttpRequest.BodyPublishers.ofString("{}"),
+                HttpResponse.BodyHandlers.discarding()))
+                .isInstanceOf(HttpTimeoutException.class)
+                .hasMessageContaining("No free connection");
+        stall.countDown();
+        reader.join(5000);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private double inFlight() {
+        Gauge gauge = meterRegistry.find("brandsnap.provider.http.in_flight").gauge();
+        return gauge != null ? gauge.value() : 0;
+    }
+}
@@ -0,0 +1,256 @@
+package com.brandsnap.generation;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Exercises retries, the circuit breaker and hedging against a local stub
+ * server standing in for the provider.
+ */
+class ProviderResiliencePolicyTest {
+
+    private HttpServer server;
+    private HttpClient client;
+    private final AtomicInteger requests = new AtomicInteger();
+    // Status codes the stub answers with, in order; 200 once exhausted
+    private final List<Integer> script = new ArrayList<>();
+    private volatile String retryAfter;
+
+    private ProviderResiliencePolicy policy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/generate", exchange -> {
+            int n = requests.getAndIncrement();
+            int status;
+            synchronized (script) {
+                status = n < script.size() ? script.get(n) : 200;
+            }
+            if (status != 200 && retryAfter != null) {
+                exchange.getResponseHeaders().add("Retry-After", retryAfter);
+            }
+            byte[] body = ("image-" + n).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        client = HttpClient.newHttpClient();
+
+        policy = new ProviderResiliencePolicy();
+        ReflectionTestUtils.setField(policy, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(policy, "maxAttempts", 3);
+        ReflectionTestUtils.setField(policy, "baseDelayMs", 1L);
+        ReflectionTestUtils.setField(policy, "maxDelayMs", 5000L);
+        ReflectionTestUtils.setField(policy, "hedgeEnabled", false);
+        ReflectionTestUtils.setField(policy, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(policy, "hedgeMinDelayMs", 50L);
+        ReflectionTestUtils.setField(policy, "breakerWindow", 4);
+        ReflectionTestUtils.setField(policy, "breakerMinCalls", 4);
+        ReflectionTestUtils.setField(policy, "breakerFailureRate", 0.5);
+        ReflectionTestUtils.setField(policy, "breakerOpenMs", 200L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        policy.shutdown();
+        client.close();
+        server.stop(0);
+    }
+
+    private void respondWith(Integer... statuses) {
+        synchronized (script) {
+            script.addAll(List.of(statuses));
+        }
+    }
+
+    // One provider call against the stub, failing like the real provider does
+    private String callStub() throws IOException {
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/generate"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                long seconds = response.headers().firstValue("Retry-After").map(Long::parseLong).orElse(0L);
+                throw ProviderException.status(response.statusCode(), seconds);
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        }
+    }
+
+    @Test
+    void retryWaitsForRetryAfter() {
+        policy.init();
+        respondWith(503);
+        retryAfter = "1";
+
+        long start = System.nanoTime();
+        String result = policy.execute(this::callStub, (loser, winner) -> {
+        });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(result).isEqualTo("image-1");
+        assertThat(requests.get()).isEqualTo(2);
+        // Jittered backoff alone would be a few milliseconds with a 1 ms base delay
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(1000);
+    }
+
+    @Test
+    void nonRetryableStatusIsNotRetried() {
+        policy.init();
+        respondWith(400);
+
+        assertThatThrownBy(() -> policy.execute(this::callStub, (loser, winner) -> {
+        })).isInstanceOf(GenerationFailedException.class);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void breakerOpensThenClosesAfterSuccessfulTrial() throws InterruptedException {
+        ReflectionTestUtils.setField(policy, "maxAttempts", 1);
+        policy.init();
+        respondWith(503, 503, 503, 503);
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> policy.execute(this::callStub, (loser, winner) -> {
+            })).isInstanceOf(GenerationFailedException.class);
+        }
+
+        // Open: fails fast without reaching the provider
+        assertThatThrownBy(() -> policy.execute(this::callStub, (loser, winner) -> {
+        })).isInstanceOf(GenerationRejectedException.class);
+        assertThat(requests.get()).isEqualTo(4);
+
+        // Half-open after the open period: one trial call goes through and closes it
+        Thread.sleep(250);
+        assertThat(policy.execute(this::callStub, (loser, winner) -> {
+        })).isEqualTo("image-4");
+
+        // Closed again
+        assertThat(policy.execute(this::callStub, (loser, winner) -> {
+        })).isEqualTo("image-5");
+        assertThat(requests.get()).isEqualTo(6);
+    }
+
+    @Test
+    void failedTrialReopensBreaker() throws InterruptedException {
+        ReflectionTestUtils.setField(policy, "maxAttempts", 1);
+        policy.init();
+        respondWith(503, 503, 503, 503, 503);
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> policy.execute(this::callStub, (loser, winner) -> {
+            })).isInstanceOf(GenerationFailedException.class);
+        }
+        Thread.sleep(250);
+        assertThatThrownBy(() -> policy.execute(this::callStub, (loser, winner) -> {
+        })).isInstanceOf(GenerationFailedException.class);
+
+        assertThatThrownBy(() -> policy.execute(this::callStub, (loser, winner) -> {
+        })).isInstanceOf(GenerationRejectedException.class);
+        assertThat(requests.get()).isEqualTo(5);
+    }
+
+    private void warmUpHedging() {
+        ReflectionTestUtils.setField(policy, "hedgeEnabled", true);
+        policy.init();
+        // Hedging needs a latency history first
+        for (int i = 0; i < 20; i++) {
+            policy.execute(() -> "warm-up", (loser, winner) -> {
+            });
+        }
+    }
+
+    @Test
+    void hedgeWinnerIsUsedAndLateLoserIsDiscarded() {
+        warmUpHedging();
+        AtomicInteger calls = new AtomicInteger();
+        List<String> discarded = new ArrayList<>();
+
+        String result = policy.execute(() -> {
+            if (calls.getAndIncrement() == 0) {
+                // Ignores cancellation and still produces a result
+                long until = System.nanoTime() + 300_000_000L;
+                while (System.nanoTime() < until) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        // keep going
+                    }
+                }
+                return "slow";
+            }
+            return "fast";
+        }, (loser, winner) -> {
+            synchronized (discarded) {
+                discarded.add(loser + "->" + winner);
+            }
+        });
+
+        assertThat(result).isEqualTo("fast");
+        // The loser has finished before execute returns, so it is already discarded
+        assertThat(discarded).containsExactly("slow->fast");
+    }
+
+    @Test
+    void cancelledLoserHasStoppedAndIsNotCountedAsFailure() {
+        warmUpHedging();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean loserStopped = new AtomicBoolean();
+        List<String> discarded = new ArrayList<>();
+
+        for (int round = 0; round < 5; round++) {
+            calls.set(0);
+            loserStopped.set(false);
+            String result = policy.execute(() -> {
+                if (calls.getAndIncrement() == 0) {
+                    try {
+                        Thread.sleep(5_000);
+                        return "slow";
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Cancelled");
+                    } finally {
+                        loserStopped.set(true);
+                    }
+                }
+                return "fast";
+            }, (loser, winner) -> discarded.add(loser));
+
+            assertThat(result).isEqualTo("fast");
+            assertThat(loserStopped).isTrue();
+        }
+        assertThat(discarded).isEmpty();
+
+        // Five cancelled losers would have opened the breaker had they been counted
+        assertThat(policy.execute(() -> "still closed", (loser, winner) -> {
+        })).isEqualTo("still closed");
+    }
+}
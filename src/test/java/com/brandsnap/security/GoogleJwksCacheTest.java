@@ -0,0 +1,172 @@
+package com.brandsnap.security;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the cache against a local stand-in for Google's JWKS endpoint.
+ */
+class GoogleJwksCacheTest {
+
+    private HttpServer server;
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile String jwks;
+    private volatile String cacheControl = "public, max-age=3600";
+
+    private final Map<String, RSAPublicKey> keyPairs = Stream.of("k1", "k2", "k3")
+            .collect(Collectors.toMap(kid -> kid, kid -> generateKey()));
+
+    private GoogleJwksCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", exchange -> {
+            fetches.incrementAndGet();
+            byte[] body = jwks.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        cache = new GoogleJwksCache();
+        ReflectionTestUtils.setField(cache, "jwksUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/certs");
+        ReflectionTestUtils.setField(cache, "defaultMaxAgeSeconds", 3600L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+        server.stop(0);
+    }
+
+    private static RSAPublicKey generateKey() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return (RSAPublicKey) generator.generateKeyPair().getPublic();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void publish(String... kids) {
+        jwks = Stream.of(kids)
+                .map(kid -> "{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"" + kid + "\",\"n\":\""
+                        + base64Url(keyPairs.get(kid).getModulus()) + "\",\"e\":\""
+                        + base64Url(keyPairs.get(kid).getPublicExponent()) + "\"}")
+                .collect(Collectors.joining(",", "{\"keys\":[", "]}"));
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private void start(long minRefreshSeconds) {
+        ReflectionTestUtils.setField(cache, "minRefreshSeconds", minRefreshSeconds);
+        cache.init();
+        // Initial load happens in the background
+        await(() -> !((Map<?, ?>) ReflectionTestUtils.getField(cache, "keys")).isEmpty());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    @Test
+    void servesKeysFromMemoryAfterInitialFetch() {
+        publish("k1");
+        start(60);
+
+        PublicKey key = cache.getKey("k1");
+
+        assertThat(key).isEqualTo(keyPairs.get("k1"));
+        assertThat(cache.getKey("k1")).isEqualTo(key);
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void backgroundRefreshPicksUpRotatedKeys() {
+        publish("k1");
+        cacheControl = "public, max-age=2";
+        start(1);
+
+        // Google rotates: k2 is added, k1 retired
+        publish("k2");
+        int before = fetches.get();
+        await(() -> fetches.get() > before
+                && ((Map<?, ?>) ReflectionTestUtils.getField(cache, "keys")).containsKey("k2"));
+
+        int afterRefresh = fetches.get();
+        assertThat(cache.getKey("k2")).isEqualTo(keyPairs.get("k2"));
+        // Served from the refreshed copy, not by an on-demand fetch
+        assertThat(fetches.get()).isEqualTo(afterRefresh);
+    }
+
+    @Test
+    void unknownKidTriggersImmediateRefetch() {
+        publish("k1");
+        start(0);
+
+        publish("k1", "k2");
+
+        assertThat(cache.getKey("k2")).isEqualTo(keyPairs.get("k2"));
+        assertThat(fetches.get()).isEqualTo(2);
+        assertThat(cache.getKey("k1")).isEqualTo(keyPairs.get("k1"));
+        assertThat(fetches.get()).isEqualTo(2);
+    }
+
+    @Test
+    void unknownKidRefetchIsRateLimited() {
+        publish("k1");
+        start(60);
+
+        publish("k1", "k3");
+
+        // Within min-refresh-seconds of the last fetch: no new request
+        assertThat(cache.getKey("k3")).isNull();
+        assertThat(cache.getKey("nope")).isNull();
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+}
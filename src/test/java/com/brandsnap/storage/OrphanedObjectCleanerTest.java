@@ -0,0 +1,95 @@
+package com.brandsnap.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Released keys are only deleted after the grace period, when still
+ * unreferenced and not claimed in the meantime.
+ */
+class OrphanedObjectCleanerTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AssetStorage assetStorage = mock(AssetStorage.class);
+
+    private OrphanedObjectCleaner cleaner;
+
+    @BeforeEach
+    void setUp() {
+        cleaner = new OrphanedObjectCleaner();
+        ReflectionTestUtils.setField(cleaner, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(cleaner, "assetStorage", assetStorage);
+        ReflectionTestUtils.setField(cleaner, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cleaner, "gracePeriodMs", 0L);
+        // Sweeps are driven by the tests
+        ReflectionTestUtils.setField(cleaner, "sweepIntervalMs", 3_600_000L);
+        cleaner.init();
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class))).thenReturn(List.of());
+        when(assetStorage.exists(anyString())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        cleaner.shutdown();
+    }
+
+    @Test
+    void deletesUnreferencedKeyAfterGracePeriod() throws IOException {
+        cleaner.submit(List.of("a"));
+        cleaner.sweep();
+
+        verify(assetStorage).delete("a");
+    }
+
+    @Test
+    void keepsKeyStillReferencedWhenTheGracePeriodEnds() throws IOException {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class))).thenReturn(List.of("a"));
+        cleaner.submit(List.of("a"));
+        cleaner.sweep();
+        cleaner.sweep();
+
+        verify(assetStorage, never()).delete("a");
+    }
+
+    @Test
+    void retainedKeyIsNotDeleted() throws IOException {
+        cleaner.submit(List.of("a"));
+
+        assertThat(cleaner.retain("a")).isTrue();
+        cleaner.sweep();
+
+        verify(assetStorage, never()).delete("a");
+    }
+
+    @Test
+    void keyIsKeptDuringTheGracePeriod() throws IOException {
+        ReflectionTestUtils.setField(cleaner, "gracePeriodMs", 60_000L);
+        cleaner.submit(List.of("a"));
+        cleaner.sweep();
+
+        verify(assetStorage, never()).delete("a");
+    }
+
+    @Test
+    void retainReportsObjectsThatAreAlreadyGone() {
+        when(assetStorage.exists("gone")).thenReturn(false);
+
+        assertThat(cleaner.retain("gone")).isFalse();
+    }
+}